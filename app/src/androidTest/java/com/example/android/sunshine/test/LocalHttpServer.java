@@ -0,0 +1,135 @@
+package com.example.android.sunshine.test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A tiny HTTP/1.0 server on the loopback interface, standing in for OpenWeatherMap so the
+ * network code can be tested offline.  Every connection is answered by the {@link Responder}
+ * and then closed.
+ */
+public class LocalHttpServer {
+
+    public interface Responder {
+        public Response respond(String path, Map<String, String> headers);
+    }
+
+    public static class Response {
+        final int status;
+        final String reason;
+        final Map<String, String> headers = new HashMap<String, String>();
+        final byte[] body;
+
+        public Response(int status, String reason, String body) {
+            this.status = status;
+            this.reason = reason;
+            this.body = body == null ? new byte[0] : body.getBytes();
+        }
+
+        public Response header(String name, String value) {
+            headers.put(name, value);
+            return this;
+        }
+    }
+
+    private final ServerSocket mServerSocket;
+    private final Responder mResponder;
+    private final AtomicInteger mRequestCount = new AtomicInteger();
+    private final Thread mAcceptThread;
+
+    public LocalHttpServer(Responder responder) throws IOException {
+        mResponder = responder;
+        mServerSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        mAcceptThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                acceptLoop();
+            }
+        }, "LocalHttpServer");
+        mAcceptThread.start();
+    }
+
+    public String getBaseUrl() {
+        return "http://127.0.0.1:" + mServerSocket.getLocalPort();
+    }
+
+    public int getRequestCount() {
+        return mRequestCount.get();
+    }
+
+    public void shutdown() throws IOException {
+        mServerSocket.close();
+    }
+
+    private void acceptLoop() {
+        while (!mServerSocket.isClosed()) {
+            final Socket socket;
+            try {
+                socket = mServerSocket.accept();
+            } catch (IOException e) {
+                return;
+            }
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    handle(socket);
+                }
+            }).start();
+        }
+    }
+
+    private void handle(Socket socket) {
+        try {
+            BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream()));
+            String requestLine = reader.readLine();
+            if (requestLine == null) {
+                return;
+            }
+            String path = requestLine.split(" ")[1];
+
+            Map<String, String> headers = new HashMap<String, String>();
+            String line;
+            while ((line = reader.readLine()) != null && line.length() > 0) {
+                int colon = line.indexOf(':');
+                if (colon > 0) {
+                    headers.put(line.substring(0, colon).trim().toLowerCase(),
+                            line.substring(colon + 1).trim());
+                }
+            }
+
+            mRequestCount.incrementAndGet();
+            Response response = mResponder.respond(path, headers);
+
+            StringBuilder head = new StringBuilder();
+            head.append("HTTP/1.0 ").append(response.status).append(' ')
+                    .append(response.reason).append("\r\n");
+            for (Map.Entry<String, String> header : response.headers.entrySet()) {
+                head.append(header.getKey()).append(": ").append(header.getValue()).append("\r\n");
+            }
+            head.append("Content-Length: ").append(response.body.length).append("\r\n");
+            head.append("Connection: close\r\n\r\n");
+
+            OutputStream out = socket.getOutputStream();
+            out.write(head.toString().getBytes());
+            out.write(response.body);
+            out.flush();
+        } catch (IOException e) {
+            // The client went away; nothing to clean up but the socket.
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // ignored
+            }
+        }
+    }
+}
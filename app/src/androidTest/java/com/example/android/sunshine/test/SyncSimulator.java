@@ -0,0 +1,116 @@
+package com.example.android.sunshine.test;
+
+import android.text.format.DateUtils;
+
+import com.example.android.sunshine.sync.SyncScheduler;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Replays a recorded history of upstream forecast changes and app opens against a
+ * {@link SyncScheduler}, counting the requests it makes and how long each change took to be
+ * picked up.  The history starts at midnight, device time.
+ */
+public class SyncSimulator {
+
+    /** An upstream model run, which changed the given share of the forecast's days. */
+    public static class Change {
+        public final long at;
+        public final double ratio;
+
+        public Change(long at, double ratio) {
+            this.at = at;
+            this.ratio = ratio;
+        }
+    }
+
+    public static class Report {
+        public int requests;
+        public long meanLagMillis;
+        public long minIntervalMillis = Long.MAX_VALUE;
+        public long maxIntervalMillis;
+
+        @Override
+        public String toString() {
+            return requests + " requests, changes picked up after " +
+                    meanLagMillis / DateUtils.MINUTE_IN_MILLIS + " min on average, intervals " +
+                    minIntervalMillis / DateUtils.MINUTE_IN_MILLIS + "-" +
+                    maxIntervalMillis / DateUtils.MINUTE_IN_MILLIS + " min";
+        }
+    }
+
+    private final List<Change> mChanges;
+    private final List<Long> mOpens;
+    private final long mFreshnessMillis;
+    private final long mDurationMillis;
+
+    /**
+     * @param changes the upstream changes, in order
+     * @param opens when the app was opened, in order; an open syncs when the forecast is older
+     *              than the freshness window
+     */
+    public SyncSimulator(List<Change> changes, List<Long> opens, long freshnessMillis,
+                         long durationMillis) {
+        mChanges = new ArrayList<Change>(changes);
+        mOpens = new ArrayList<Long>(opens);
+        mFreshnessMillis = freshnessMillis;
+        mDurationMillis = durationMillis;
+    }
+
+    public Report run(SyncScheduler scheduler) {
+        Report report = new Report();
+        int nextChange = 0;
+        int nextOpen = 0;
+        long lagTotal = 0;
+        int lagCount = 0;
+        long lastOpened = -1;
+
+        // The first sync, of a location just added while the app is open
+        long lastSync = 0;
+        long nextDue = record(report, scheduler.getNextInterval(1, 0, true));
+        report.requests = 1;
+
+        while (true) {
+            long openAt = nextOpen < mOpens.size() ? mOpens.get(nextOpen) : Long.MAX_VALUE;
+            if (Math.min(openAt, nextDue) >= mDurationMillis) {
+                break;
+            }
+
+            long syncAt;
+            if (openAt < nextDue) {
+                nextOpen++;
+                lastOpened = openAt;
+                if (openAt - lastSync < mFreshnessMillis) {
+                    continue;
+                }
+                syncAt = openAt;
+            } else {
+                syncAt = nextDue;
+            }
+
+            double ratio = 0;
+            while (nextChange < mChanges.size() && mChanges.get(nextChange).at <= syncAt) {
+                Change change = mChanges.get(nextChange++);
+                ratio = Math.max(ratio, change.ratio);
+                lagTotal += syncAt - change.at;
+                lagCount++;
+            }
+            int hourOfDay = (int) (syncAt / DateUtils.HOUR_IN_MILLIS % 24);
+            long interval = scheduler.getNextInterval(ratio, hourOfDay, lastOpened >= lastSync);
+
+            lastSync = syncAt;
+            nextDue = syncAt + record(report, interval);
+            report.requests++;
+        }
+
+        report.meanLagMillis = lagCount == 0 ? 0 : lagTotal / lagCount;
+        return report;
+    }
+
+    private static long record(Report report, long interval) {
+        report.minIntervalMillis = Math.min(report.minIntervalMillis, interval);
+        report.maxIntervalMillis = Math.max(report.maxIntervalMillis, interval);
+        return interval;
+    }
+}
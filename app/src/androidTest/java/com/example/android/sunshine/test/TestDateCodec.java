@@ -0,0 +1,140 @@
+package com.example.android.sunshine.test;
+
+import android.os.Debug;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.example.android.sunshine.data.DateCodec;
+import com.example.android.sunshine.data.WeatherContract;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+public class TestDateCodec extends AndroidTestCase {
+
+    public static final String LOG_TAG = TestDateCodec.class.getSimpleName();
+
+    // 2014-01-01
+    private static final long FIRST_DAY = 16071;
+
+    public void testKeysMatchSimpleDateFormat() {
+        SimpleDateFormat format = new SimpleDateFormat(WeatherContract.DATE_FORMAT);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+        // From 1696, as SimpleDateFormat switches to the Julian calendar before 1582.  Crosses
+        // leap years, century years and 1970 itself.
+        for (long day = -100000; day < 800000; day += 997) {
+            String key = format.format(new Date(day * 24 * 60 * 60 * 1000));
+            assertEquals(key, DateCodec.formatKey(day));
+            assertEquals(day, DateCodec.parseKey(key));
+        }
+    }
+
+    public void testEpochDayIsTheLocalDay() {
+        Calendar calendar = Calendar.getInstance();
+        for (int hour = 0; hour < 24 * 400; hour += 7) {
+            calendar.clear();
+            calendar.set(2014, Calendar.JANUARY, 1, 0, 0, 0);
+            calendar.add(Calendar.HOUR_OF_DAY, hour);
+
+            String key = new SimpleDateFormat(WeatherContract.DATE_FORMAT)
+                    .format(calendar.getTime());
+            assertEquals(key, DateCodec.formatKey(
+                    DateCodec.getEpochDay(calendar.getTimeInMillis())));
+        }
+    }
+
+    public void testFutureDatesDontLookUpTheTimeZone() {
+        DateCodec.onTimeZoneChanged();
+        long lookups = DateCodec.getTimeZoneLookupCount();
+
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(Calendar.HOUR_OF_DAY, 12);
+        calendar.add(Calendar.DATE, 10);
+        assertEquals(DateCodec.today() + 10, DateCodec.getEpochDay(calendar.getTimeInMillis()));
+        assertEquals(lookups, DateCodec.getTimeZoneLookupCount());
+    }
+
+    public void testDisplayFieldsMatchSimpleDateFormat() {
+        for (long day = FIRST_DAY; day < FIRST_DAY + 400; day++) {
+            Date date = WeatherContract.getDateFromDb(DateCodec.formatKey(day));
+            assertEquals(new SimpleDateFormat("EEEE").format(date),
+                    DateCodec.formatDayName(day));
+            assertEquals(new SimpleDateFormat("MMMM dd").format(date),
+                    DateCodec.formatMonthDay(day));
+            assertEquals(new SimpleDateFormat("EEE MMM dd").format(date),
+                    DateCodec.formatShortDate(day));
+        }
+    }
+
+    public void testFormattersFollowTheLocale() {
+        Locale locale = Locale.getDefault();
+        try {
+            Locale.setDefault(Locale.US);
+            assertEquals("Wednesday", DateCodec.formatDayName(FIRST_DAY));
+            Locale.setDefault(Locale.GERMANY);
+            assertEquals("Mittwoch", DateCodec.formatDayName(FIRST_DAY));
+        } finally {
+            Locale.setDefault(locale);
+        }
+    }
+
+    // Logs the objects allocated to label one day, the way Utility used to and with the codec.
+    public void testAllocationBenchmark() throws ParseException {
+        final int iterations = 1000;
+        String key = DateCodec.formatKey(DateCodec.today() + 3);
+        long day = DateCodec.parseKey(key);
+
+        // Warm up both paths, so one-time setup isn't counted
+        legacyDayName(key);
+        codecDayName(day);
+
+        Debug.resetThreadAllocCount();
+        for (int i = 0; i < iterations; i++) {
+            legacyDayName(key);
+        }
+        int legacyAllocs = Debug.getThreadAllocCount();
+
+        Debug.resetThreadAllocCount();
+        for (int i = 0; i < iterations; i++) {
+            codecDayName(day);
+        }
+        int codecAllocs = Debug.getThreadAllocCount();
+
+        Log.d(LOG_TAG, "SimpleDateFormat: " + ((float) legacyAllocs / iterations) +
+                " allocations/call, DateCodec: " + ((float) codecAllocs / iterations) +
+                " allocations/call");
+        assertTrue(codecAllocs <= legacyAllocs);
+    }
+
+    // What Utility.getDayName did before the codec, minus the resource lookups
+    private static String legacyDayName(String dateStr) throws ParseException {
+        Date inputDate = new SimpleDateFormat(WeatherContract.DATE_FORMAT).parse(dateStr);
+        Date todayDate = new Date();
+        if (new SimpleDateFormat(WeatherContract.DATE_FORMAT).format(todayDate).equals(dateStr)) {
+            return "Today";
+        }
+        Calendar cal = Calendar.getInstance();
+        cal.setTime(todayDate);
+        cal.add(Calendar.DATE, 1);
+        if (new SimpleDateFormat(WeatherContract.DATE_FORMAT).format(cal.getTime())
+                .equals(dateStr)) {
+            return "Tomorrow";
+        }
+        return new SimpleDateFormat("EEEE").format(inputDate);
+    }
+
+    private static String codecDayName(long day) {
+        long today = DateCodec.today();
+        if (day == today) {
+            return "Today";
+        } else if (day == today + 1) {
+            return "Tomorrow";
+        }
+        return DateCodec.formatDayName(day);
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.android.sunshine.test;
+
+import android.content.ContentValues;
+import android.test.AndroidTestCase;
+import android.text.format.DateUtils;
+
+import com.example.android.sunshine.R;
+import com.example.android.sunshine.Utility;
+import com.example.android.sunshine.data.WeatherContract.LocationEntry;
+import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
+import com.example.android.sunshine.sync.ForecastFreshness;
+
+public class TestForecastFreshness extends AndroidTestCase {
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        deleteAllRecords();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        deleteAllRecords();
+        super.tearDown();
+    }
+
+    private void deleteAllRecords() {
+        mContext.getContentResolver().delete(WeatherEntry.CONTENT_URI, null, null);
+        mContext.getContentResolver().delete(LocationEntry.CONTENT_URI, null, null);
+    }
+
+    public void testFreshUntilItExpires() {
+        long fetched = 1000000;
+        long expires = fetched + DateUtils.HOUR_IN_MILLIS;
+
+        assertTrue(ForecastFreshness.isFresh(fetched, expires, fetched));
+        assertTrue(ForecastFreshness.isFresh(fetched, expires, expires - 1));
+        assertFalse(ForecastFreshness.isFresh(fetched, expires, expires));
+        // Never fetched, and a clock that was set back
+        assertFalse(ForecastFreshness.isFresh(0, 0, fetched));
+        assertFalse(ForecastFreshness.isFresh(fetched, expires, fetched - 1));
+    }
+
+    public void testViewingExpiresWithinTheFreshnessWindow() {
+        long fetched = 1000000;
+        long window = mContext.getResources().getInteger(R.integer.sync_freshness_minutes) *
+                DateUtils.MINUTE_IN_MILLIS;
+
+        // A schedule that keeps the forecast longer than the window is cut short when viewing
+        assertEquals(fetched + window, ForecastFreshness.getViewingExpiresAt(mContext, fetched,
+                fetched + window + DateUtils.HOUR_IN_MILLIS));
+        assertEquals(fetched + window - 1, ForecastFreshness.getViewingExpiresAt(mContext,
+                fetched, fetched + window - 1));
+    }
+
+    public void testStoredLocationFreshness() {
+        long now = System.currentTimeMillis();
+        long viewingExpires = ForecastFreshness.getViewingExpiresAt(mContext, now,
+                now + DateUtils.DAY_IN_MILLIS);
+
+        // Not stored yet
+        assertFalse(ForecastFreshness.isFresh(mContext, TestProvider.TEST_LOCATION, now));
+
+        ContentValues values = TestProvider.getLocationContentValues();
+        values.put(LocationEntry.COLUMN_LAST_FETCHED, now);
+        values.put(LocationEntry.COLUMN_EXPIRES_AT, now + DateUtils.DAY_IN_MILLIS);
+        mContext.getContentResolver().insert(LocationEntry.CONTENT_URI, values);
+
+        assertTrue(ForecastFreshness.isFresh(mContext, TestProvider.TEST_LOCATION, now + 1));
+        assertFalse(ForecastFreshness.isFresh(mContext, TestProvider.TEST_LOCATION,
+                viewingExpires));
+        assertFalse(ForecastFreshness.isFresh(mContext, "94043", now + 1));
+    }
+
+    public void testUpdatedAgo() {
+        long now = System.currentTimeMillis();
+
+        assertEquals(mContext.getString(R.string.updated_just_now),
+                Utility.getUpdatedAgo(mContext, now - 10 * DateUtils.SECOND_IN_MILLIS, now));
+        assertEquals(mContext.getString(R.string.format_updated_ago,
+                        DateUtils.getRelativeTimeSpanString(now - 5 * DateUtils.MINUTE_IN_MILLIS,
+                                now, DateUtils.MINUTE_IN_MILLIS)),
+                Utility.getUpdatedAgo(mContext, now - 5 * DateUtils.MINUTE_IN_MILLIS, now));
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.android.sunshine.test;
+
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.example.android.sunshine.sync.ForecastJsonParser;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+public class TestForecastJsonParser extends AndroidTestCase {
+
+    public static final String LOG_TAG = TestForecastJsonParser.class.getSimpleName();
+
+    // Response recorded from
+    // http://api.openweathermap.org/data/2.5/forecast/daily?q=32773&mode=json&units=metric&cnt=3
+    public static final String RECORDED_FORECAST_JSON =
+            "{\"cod\":\"200\",\"message\":0.0143,\"city\":{\"id\":4173838,\"name\":\"Sanford\"," +
+            "\"coord\":{\"lon\":-81.269531,\"lat\":28.800539},\"country\":\"US\",\"population\":0}," +
+            "\"cnt\":3,\"list\":[" +
+            "{\"dt\":1407859200,\"temp\":{\"day\":33.18,\"min\":23.41,\"max\":33.78,\"night\":23.41," +
+            "\"eve\":31.1,\"morn\":27.03},\"pressure\":1026.06,\"humidity\":60," +
+            "\"weather\":[{\"id\":501,\"main\":\"Rain\",\"description\":\"moderate rain\",\"icon\":\"10d\"}]," +
+            "\"speed\":2.81,\"deg\":181,\"clouds\":12,\"rain\":4}," +
+            "{\"dt\":1407945600,\"temp\":{\"day\":32.49,\"min\":22.64,\"max\":33.01,\"night\":22.64," +
+            "\"eve\":29.38,\"morn\":25.32},\"pressure\":1024.59,\"humidity\":62," +
+            "\"weather\":[{\"id\":800,\"main\":\"Clear\",\"description\":\"sky is clear\",\"icon\":\"01d\"}]," +
+            "\"speed\":2.51,\"deg\":230,\"clouds\":0}," +
+            "{\"dt\":1408032000,\"temp\":{\"day\":31.9,\"min\":22.94,\"max\":32.11,\"night\":23.73," +
+            "\"eve\":28.76,\"morn\":22.94},\"pressure\":1023.3,\"humidity\":66," +
+            "\"weather\":[{\"id\":802,\"main\":\"Clouds\",\"description\":\"scattered clouds\",\"icon\":\"03d\"}]," +
+            "\"speed\":1.96,\"deg\":264,\"clouds\":32}" +
+            "]}";
+
+    // The city id of the recorded response
+    public static final long RECORDED_CITY_ID = 4173838;
+
+    private static class RecordingHandler implements ForecastJsonParser.Handler {
+        long cityId;
+        String cityName;
+        double latitude;
+        double longitude;
+        final List<Object[]> days = new ArrayList<Object[]>();
+
+        @Override
+        public void onCity(long cityId, String cityName, double latitude, double longitude) {
+            this.cityId = cityId;
+            this.cityName = cityName;
+            this.latitude = latitude;
+            this.longitude = longitude;
+        }
+
+        @Override
+        public void onDay(long dateTime, double pressure, int humidity, double windSpeed,
+                          double windDirection, double high, double low,
+                          String description, int weatherId) {
+            days.add(new Object[] { dateTime, pressure, humidity, windSpeed, windDirection,
+                    high, low, description, weatherId });
+        }
+    }
+
+    public void testParseRecordedForecast() throws IOException {
+        RecordingHandler handler = new RecordingHandler();
+        new ForecastJsonParser(handler).parse(new StringReader(RECORDED_FORECAST_JSON));
+
+        assertEquals(RECORDED_CITY_ID, handler.cityId);
+        assertEquals("Sanford", handler.cityName);
+        assertEquals(28.800539, handler.latitude, 1e-9);
+        assertEquals(-81.269531, handler.longitude, 1e-9);
+
+        assertEquals(3, handler.days.size());
+
+        Object[] first = handler.days.get(0);
+        assertEquals(1407859200L, first[0]);
+        assertEquals(1026.06, (Double) first[1], 1e-9);
+        assertEquals(60, first[2]);
+        assertEquals(2.81, (Double) first[3], 1e-9);
+        assertEquals(181.0, (Double) first[4], 1e-9);
+        assertEquals(33.78, (Double) first[5], 1e-9);
+        assertEquals(23.41, (Double) first[6], 1e-9);
+        assertEquals("Rain", first[7]);
+        assertEquals(501, first[8]);
+
+        Object[] last = handler.days.get(2);
+        assertEquals("Clouds", last[7]);
+        assertEquals(802, last[8]);
+    }
+
+    public void testCityAfterList() throws IOException {
+        String json = "{\"list\":[{\"dt\":1,\"temp\":{\"min\":1,\"max\":2}," +
+                "\"weather\":[{\"id\":800,\"main\":\"Clear\"}]}]," +
+                "\"city\":{\"name\":\"Sanford\",\"coord\":{\"lat\":1.5,\"lon\":2.5}}}";
+
+        RecordingHandler handler = new RecordingHandler();
+        new ForecastJsonParser(handler).parse(new StringReader(json));
+
+        assertEquals("Sanford", handler.cityName);
+        assertEquals(1, handler.days.size());
+        assertEquals("Clear", handler.days.get(0)[7]);
+    }
+
+    public void testErrorResponseHasNoDays() throws IOException {
+        String json = "{\"cod\":\"404\",\"message\":\"Error: Not found city\"}";
+
+        RecordingHandler handler = new RecordingHandler();
+        new ForecastJsonParser(handler).parse(new StringReader(json));
+
+        assertNull(handler.cityName);
+        assertEquals(0, handler.days.size());
+    }
+
+    // Not an assertion, just logs how the streaming parser compares with building the
+    // JSONObject tree it replaced.
+    public void testParseBenchmark() throws Exception {
+        final int iterations = 500;
+
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            new ForecastJsonParser(new RecordingHandler())
+                    .parse(new StringReader(RECORDED_FORECAST_JSON));
+        }
+        long streamingNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            JSONObject forecastJson = new JSONObject(RECORDED_FORECAST_JSON);
+            JSONArray weatherArray = forecastJson.getJSONArray("list");
+            for (int j = 0; j < weatherArray.length(); j++) {
+                weatherArray.getJSONObject(j).getJSONObject("temp").getDouble("max");
+            }
+        }
+        long treeNanos = System.nanoTime() - start;
+
+        Log.d(LOG_TAG, "streaming: " + (streamingNanos / iterations) + " ns/parse, " +
+                "JSONObject: " + (treeNanos / iterations) + " ns/parse");
+    }
+}
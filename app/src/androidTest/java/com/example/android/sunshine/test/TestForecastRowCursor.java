@@ -0,0 +1,100 @@
+package com.example.android.sunshine.test;
+
+import android.content.ContentUris;
+import android.database.Cursor;
+import android.test.AndroidTestCase;
+
+import com.example.android.sunshine.ForecastCursorLoader;
+import com.example.android.sunshine.ForecastFragment;
+import com.example.android.sunshine.ForecastRowCursor;
+import com.example.android.sunshine.ForecastSnapshot;
+import com.example.android.sunshine.R;
+import com.example.android.sunshine.Utility;
+import com.example.android.sunshine.data.DateCodec;
+import com.example.android.sunshine.data.WeatherContract;
+import com.example.android.sunshine.data.WeatherContract.LocationEntry;
+import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
+
+public class TestForecastRowCursor extends AndroidTestCase {
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mContext.getContentResolver().delete(WeatherEntry.CONTENT_URI, null, null);
+        mContext.getContentResolver().delete(LocationEntry.CONTENT_URI, null, null);
+
+        long locationRowId = ContentUris.parseId(mContext.getContentResolver().insert(
+                LocationEntry.CONTENT_URI, TestProvider.getLocationContentValues()));
+        mContext.getContentResolver().insert(WeatherEntry.CONTENT_URI,
+                TestProvider.getWeatherContentValues(locationRowId));
+    }
+
+    private ForecastRowCursor load() {
+        ForecastCursorLoader loader = new ForecastCursorLoader(mContext,
+                WeatherEntry.buildWeatherLocationWithStartDate(TestProvider.TEST_LOCATION,
+                        TestProvider.TEST_DATE),
+                ForecastFragment.FORECAST_COLUMNS, null, null, WeatherEntry.COLUMN_DATE + " ASC");
+        return (ForecastRowCursor) loader.loadInBackground();
+    }
+
+    public void testRowsMatchTheCursor() {
+        ForecastRowCursor cursor = load();
+        boolean isMetric = Utility.isMetric(mContext);
+
+        assertTrue(cursor.moveToFirst());
+        ForecastRowCursor.Row row = cursor.getRow(isMetric, DateCodec.today());
+        assertNotNull(row);
+
+        assertEquals(R.drawable.ic_light_rain, row.iconResource);
+        assertEquals(R.drawable.art_light_rain, row.artResource);
+        assertEquals("Asteroids", row.description);
+        assertEquals(Utility.getFriendlyDayString(mContext,
+                WeatherContract.getDbDate(TestProvider.TEST_DATE)), row.dateLabel);
+        assertEquals(Utility.formatTemperature(mContext,
+                cursor.getFloat(ForecastFragment.COL_WEATHER_MAX_TEMP), isMetric), row.high);
+        assertEquals(Utility.formatTemperature(mContext,
+                cursor.getFloat(ForecastFragment.COL_WEATHER_MIN_TEMP), isMetric), row.low);
+        cursor.close();
+    }
+
+    public void testRowsAreDroppedForOtherUnitsOrDay() {
+        ForecastRowCursor cursor = load();
+        boolean isMetric = Utility.isMetric(mContext);
+        long today = DateCodec.today();
+
+        assertTrue(cursor.moveToFirst());
+        assertNull(cursor.getRow(!isMetric, today));
+        assertNull(cursor.getRow(isMetric, today + 1));
+        cursor.close();
+    }
+
+    public void testSnapshotHasTheDays() {
+        ForecastRowCursor cursor = load();
+        ForecastSnapshot snapshot = cursor.getSnapshot();
+        cursor.close();
+
+        assertEquals(TestProvider.TEST_LOCATION, snapshot.getLocation());
+        long date = WeatherContract.getDbDate(TestProvider.TEST_DATE);
+        ForecastSnapshot.Day day = snapshot.getDay(date);
+        assertNotNull(day);
+        assertEquals(date, day.date);
+        assertEquals(321, day.weatherId);
+        assertEquals("Asteroids", day.description);
+        assertEquals(75.0, day.high);
+        assertEquals(65.0, day.low);
+        assertEquals(1.2, day.humidity, 1e-9);
+        assertEquals(5.5f, day.windSpeed, 1e-6f);
+        assertEquals(1.1f, day.degrees, 1e-6f);
+        assertEquals(1.3, day.pressure, 1e-9);
+        assertNull(snapshot.getDay(date + 1));
+    }
+
+    public void testCursorIsStillUsable() {
+        Cursor cursor = load();
+        assertEquals(1, cursor.getCount());
+        assertTrue(cursor.moveToFirst());
+        assertEquals(TestProvider.TEST_LOCATION,
+                cursor.getString(ForecastFragment.COL_LOCATION_SETTING));
+        cursor.close();
+    }
+}
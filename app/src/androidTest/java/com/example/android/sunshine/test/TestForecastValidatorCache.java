@@ -0,0 +1,103 @@
+package com.example.android.sunshine.test;
+
+import android.content.Context;
+import android.test.AndroidTestCase;
+
+import com.example.android.sunshine.sync.ForecastValidatorCache;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Map;
+
+public class TestForecastValidatorCache extends AndroidTestCase {
+
+    private static final String CURRENT_ETAG = "\"forecast-v2\"";
+    private static final String LAST_MODIFIED = "Tue, 12 Aug 2014 16:00:00 GMT";
+
+    private LocalHttpServer mServer;
+    private ForecastValidatorCache mCache;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mContext.getSharedPreferences(ForecastValidatorCache.PREFS_NAME, Context.MODE_PRIVATE)
+                .edit().clear().commit();
+
+        mCache = new ForecastValidatorCache(mContext);
+
+        // Answers 304 only when the client sends back the current ETag.
+        mServer = new LocalHttpServer(new LocalHttpServer.Responder() {
+            @Override
+            public LocalHttpServer.Response respond(String path, Map<String, String> headers) {
+                if (CURRENT_ETAG.equals(headers.get("if-none-match"))) {
+                    return new LocalHttpServer.Response(304, "Not Modified", null);
+                }
+                return new LocalHttpServer.Response(200, "OK",
+                        TestForecastJsonParser.RECORDED_FORECAST_JSON)
+                        .header("ETag", CURRENT_ETAG)
+                        .header("Last-Modified", LAST_MODIFIED);
+            }
+        });
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mServer.shutdown();
+        super.tearDown();
+    }
+
+    private HttpURLConnection open(String location) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection)
+                new URL(mServer.getBaseUrl() + "/forecast/daily?q=" + location).openConnection();
+        connection.setUseCaches(false);
+        mCache.applyTo(connection, location);
+        connection.connect();
+        return connection;
+    }
+
+    public void testSecondRequestIsNotModified() throws IOException {
+        HttpURLConnection connection = open(TestProvider.TEST_LOCATION);
+        assertFalse(mCache.isNotModified(connection));
+        assertEquals(CURRENT_ETAG, ForecastValidatorCache.getETag(connection));
+        assertEquals(LAST_MODIFIED, ForecastValidatorCache.getLastModified(connection));
+        mCache.put(TestProvider.TEST_LOCATION,
+                ForecastValidatorCache.getETag(connection),
+                ForecastValidatorCache.getLastModified(connection));
+        connection.disconnect();
+
+        connection = open(TestProvider.TEST_LOCATION);
+        assertTrue(mCache.isNotModified(connection));
+        connection.disconnect();
+
+        assertEquals(1, mCache.getHitCount());
+        assertEquals(1, mCache.getMissCount());
+        assertEquals(2, mServer.getRequestCount());
+    }
+
+    public void testValidatorsAreKeptPerLocation() throws IOException {
+        mCache.put(TestProvider.TEST_LOCATION, CURRENT_ETAG, LAST_MODIFIED);
+
+        HttpURLConnection connection = open("94043");
+        assertFalse(mCache.isNotModified(connection));
+        connection.disconnect();
+
+        assertEquals(0, mCache.getHitCount());
+        assertEquals(1, mCache.getMissCount());
+    }
+
+    public void testStaleValidatorIsRefetched() throws IOException {
+        mCache.put(TestProvider.TEST_LOCATION, "\"forecast-v1\"", LAST_MODIFIED);
+
+        HttpURLConnection connection = open(TestProvider.TEST_LOCATION);
+        assertFalse(mCache.isNotModified(connection));
+        connection.disconnect();
+
+        mCache.remove(TestProvider.TEST_LOCATION);
+        connection = open(TestProvider.TEST_LOCATION);
+        assertFalse(mCache.isNotModified(connection));
+        connection.disconnect();
+
+        assertEquals(2, mCache.getMissCount());
+    }
+}
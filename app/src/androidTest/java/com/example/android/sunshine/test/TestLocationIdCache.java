@@ -0,0 +1,65 @@
+package com.example.android.sunshine.test;
+
+import android.content.ContentUris;
+import android.net.Uri;
+import android.test.AndroidTestCase;
+
+import com.example.android.sunshine.data.LocationIdCache;
+import com.example.android.sunshine.data.WeatherContract.LocationEntry;
+import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
+
+public class TestLocationIdCache extends AndroidTestCase {
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        LocationIdCache.clear();
+    }
+
+    public void testPutAndGet() {
+        assertNull(LocationIdCache.get(TestProvider.TEST_LOCATION));
+
+        LocationIdCache.put(TestProvider.TEST_LOCATION, 7, LocationIdCache.getGeneration());
+        assertEquals(Long.valueOf(7), LocationIdCache.get(TestProvider.TEST_LOCATION));
+
+        LocationIdCache.remove(TestProvider.TEST_LOCATION);
+        assertNull(LocationIdCache.get(TestProvider.TEST_LOCATION));
+    }
+
+    public void testStaleLookupIsNotCached() {
+        int generation = LocationIdCache.getGeneration();
+        LocationIdCache.clear();
+
+        LocationIdCache.put(TestProvider.TEST_LOCATION, 7, generation);
+        assertNull(LocationIdCache.get(TestProvider.TEST_LOCATION));
+    }
+
+    public void testLeastRecentlyUsedIsDropped() {
+        int generation = LocationIdCache.getGeneration();
+        LocationIdCache.put("first", 1, generation);
+        for (int i = 0; i < 1000; i++) {
+            LocationIdCache.put("location" + i, i, generation);
+            // Keep using the first one, so it is never the eldest
+            assertNotNull(LocationIdCache.get("first"));
+        }
+
+        assertNull(LocationIdCache.get("location0"));
+        assertEquals(Long.valueOf(999), LocationIdCache.get("location999"));
+    }
+
+    public void testProviderWritesInvalidate() {
+        mContext.getContentResolver().delete(WeatherEntry.CONTENT_URI, null, null);
+        mContext.getContentResolver().delete(LocationEntry.CONTENT_URI, null, null);
+
+        Uri locationUri = mContext.getContentResolver().insert(
+                LocationEntry.CONTENT_URI, TestProvider.getLocationContentValues());
+        long locationRowId = ContentUris.parseId(locationUri);
+
+        LocationIdCache.put(TestProvider.TEST_LOCATION, locationRowId,
+                LocationIdCache.getGeneration());
+        assertEquals(Long.valueOf(locationRowId), LocationIdCache.get(TestProvider.TEST_LOCATION));
+
+        mContext.getContentResolver().delete(LocationEntry.CONTENT_URI, null, null);
+        assertNull(LocationIdCache.get(TestProvider.TEST_LOCATION));
+    }
+}
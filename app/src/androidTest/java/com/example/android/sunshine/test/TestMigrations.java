@@ -0,0 +1,172 @@
+package com.example.android.sunshine.test;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.test.AndroidTestCase;
+
+import com.example.android.sunshine.data.WeatherContract;
+import com.example.android.sunshine.data.WeatherContract.LocationEntry;
+import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
+import com.example.android.sunshine.data.WeatherDbHelper;
+import com.example.android.sunshine.data.WeatherDbMigrations;
+
+public class TestMigrations extends AndroidTestCase {
+
+    // The schema as it was shipped in version 1 of the database.
+    static final String[] SQL_CREATE_V1 = {
+            "CREATE TABLE location (_id INTEGER PRIMARY KEY,location_setting TEXT NOT NULL, " +
+                    "city_name TEXT NOT NULL, latitude REAL NOT NULL, longitude REAL NOT NULL, " +
+                    "UNIQUE (location_setting) ON CONFLICT IGNORE);",
+            "CREATE TABLE weather (_id INTEGER PRIMARY KEY AUTOINCREMENT,location_id INTEGER NOT NULL, " +
+                    "date TEXT NOT NULL, short_desc TEXT NOT NULL, weather_id INTEGER NOT NULL," +
+                    "min REAL NOT NULL, max REAL NOT NULL, humidity REAL NOT NULL, " +
+                    "pressure REAL NOT NULL, wind REAL NOT NULL, degrees REAL NOT NULL, " +
+                    " FOREIGN KEY (location_id) REFERENCES location (_id),  " +
+                    "UNIQUE (date, location_id) ON CONFLICT REPLACE);",
+    };
+
+    static void createVersion1(SQLiteDatabase db) {
+        for (String sql : SQL_CREATE_V1) {
+            db.execSQL(sql);
+        }
+        db.execSQL("INSERT INTO location VALUES (1, '99705', 'North Pole', 64.7488, -147.353)");
+        db.execSQL("INSERT INTO weather VALUES " +
+                "(7, 1, '20141205', 'Asteroids', 321, 65, 75, 1.2, 1.3, 5.5, 1.1)");
+        db.execSQL("INSERT INTO weather VALUES " +
+                "(8, 1, '20150101', 'Clear', 800, 60, 70, 1.2, 1.3, 5.5, 1.1)");
+        db.setVersion(1);
+    }
+
+    public void testDateToEpochDay() {
+        SQLiteDatabase db = SQLiteDatabase.create(null);
+        createVersion1(db);
+
+        WeatherDbMigrations.get(1).migrate(db);
+
+        Cursor cursor = db.rawQuery("SELECT _id, date, typeof(date), short_desc FROM weather " +
+                "ORDER BY date", null);
+        assertEquals(2, cursor.getCount());
+
+        assertTrue(cursor.moveToNext());
+        assertEquals(7, cursor.getLong(0));
+        assertEquals(WeatherContract.getDbDate("20141205"), cursor.getLong(1));
+        assertEquals("integer", cursor.getString(2));
+        assertEquals("Asteroids", cursor.getString(3));
+
+        assertTrue(cursor.moveToNext());
+        assertEquals(8, cursor.getLong(0));
+        assertEquals(WeatherContract.getDbDate("20150101"), cursor.getLong(1));
+        cursor.close();
+
+        db.close();
+    }
+
+    public void testWeatherLocationDateIndex() {
+        SQLiteDatabase db = SQLiteDatabase.create(null);
+        createVersion1(db);
+        WeatherDbMigrations.get(1).migrate(db);
+
+        WeatherDbMigrations.get(2).migrate(db);
+
+        Cursor cursor = db.rawQuery("SELECT name FROM sqlite_master WHERE type = 'index' " +
+                "AND name = ?", new String[] { WeatherDbHelper.INDEX_WEATHER_LOCATION_DATE });
+        assertEquals(1, cursor.getCount());
+        cursor.close();
+
+        db.close();
+    }
+
+    public void testLocationRetention() {
+        SQLiteDatabase db = SQLiteDatabase.create(null);
+        createVersion1(db);
+        WeatherDbMigrations.get(1).migrate(db);
+        WeatherDbMigrations.get(2).migrate(db);
+
+        WeatherDbMigrations.get(3).migrate(db);
+
+        Cursor cursor = db.query(LocationEntry.TABLE_NAME, new String[] {
+                LocationEntry.COLUMN_LAST_VIEWED, LocationEntry.COLUMN_HISTORY_DAYS },
+                null, null, null, null, null);
+        assertTrue(cursor.moveToFirst());
+        assertTrue(cursor.getLong(0) > 0);
+        assertEquals(0, cursor.getInt(1));
+        cursor.close();
+
+        db.close();
+    }
+
+    public void testLocationCityId() {
+        SQLiteDatabase db = SQLiteDatabase.create(null);
+        createVersion1(db);
+        WeatherDbMigrations.get(1).migrate(db);
+        WeatherDbMigrations.get(2).migrate(db);
+        WeatherDbMigrations.get(3).migrate(db);
+
+        WeatherDbMigrations.get(4).migrate(db);
+
+        Cursor cursor = db.query(LocationEntry.TABLE_NAME, new String[] {
+                LocationEntry.COLUMN_CITY_ID }, null, null, null, null, null);
+        assertTrue(cursor.moveToFirst());
+        assertEquals(0, cursor.getLong(0));
+        cursor.close();
+
+        db.close();
+    }
+
+    public void testLocationFreshness() {
+        SQLiteDatabase db = SQLiteDatabase.create(null);
+        createVersion1(db);
+        for (int version = 1; version < 5; version++) {
+            WeatherDbMigrations.get(version).migrate(db);
+        }
+
+        WeatherDbMigrations.get(5).migrate(db);
+
+        Cursor cursor = db.query(LocationEntry.TABLE_NAME, new String[] {
+                LocationEntry.COLUMN_LAST_FETCHED, LocationEntry.COLUMN_EXPIRES_AT },
+                null, null, null, null, null);
+        assertTrue(cursor.moveToFirst());
+        assertEquals(0, cursor.getLong(0));
+        assertEquals(0, cursor.getLong(1));
+        cursor.close();
+
+        db.close();
+    }
+
+    public void testEveryVersionHasAMigration() {
+        mContext.deleteDatabase(WeatherDbHelper.DATABASE_NAME);
+        SQLiteDatabase db = new WeatherDbHelper(mContext).getReadableDatabase();
+        int currentVersion = db.getVersion();
+        db.close();
+
+        assertTrue(WeatherDbMigrations.canMigrate(1, currentVersion));
+    }
+
+    public void testUpgradeKeepsData() {
+        mContext.deleteDatabase(WeatherDbHelper.DATABASE_NAME);
+        SQLiteDatabase db = mContext.openOrCreateDatabase(
+                WeatherDbHelper.DATABASE_NAME, Context.MODE_PRIVATE, null);
+        createVersion1(db);
+        db.close();
+
+        WeatherDbHelper dbHelper = new WeatherDbHelper(mContext);
+        db = dbHelper.getReadableDatabase();
+
+        Cursor cursor = db.query(LocationEntry.TABLE_NAME, null, null, null, null, null, null);
+        assertEquals(1, cursor.getCount());
+        cursor.close();
+
+        cursor = db.query(WeatherEntry.TABLE_NAME, null,
+                WeatherEntry.COLUMN_DATE + " >= ?",
+                new String[] { Long.toString(WeatherContract.getDbDate("20141206")) },
+                null, null, null);
+        assertTrue(cursor.moveToFirst());
+        assertEquals(1, cursor.getCount());
+        assertEquals("Clear", cursor.getString(cursor.getColumnIndex(WeatherEntry.COLUMN_SHORT_DESC)));
+        cursor.close();
+
+        dbHelper.close();
+        mContext.deleteDatabase(WeatherDbHelper.DATABASE_NAME);
+    }
+}
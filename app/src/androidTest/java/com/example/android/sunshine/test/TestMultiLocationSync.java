@@ -0,0 +1,104 @@
+package com.example.android.sunshine.test;
+
+import android.content.Context;
+import android.content.SyncStats;
+import android.os.SystemClock;
+import android.test.AndroidTestCase;
+
+import com.example.android.sunshine.sync.ForecastFetcher;
+import com.example.android.sunshine.sync.ForecastValidatorCache;
+import com.example.android.sunshine.sync.MultiLocationSync;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestMultiLocationSync extends AndroidTestCase {
+
+    private static final long RESPONSE_DELAY_MILLIS = 200;
+    private static final int MAX_REQUESTS_PER_HOST = 2;
+
+    private static final List<String> LOCATIONS =
+            Arrays.asList(TestProvider.TEST_LOCATION, "94043", "10001", "60601", "73301", "02134");
+
+    private LocalHttpServer mServer;
+    private ForecastFetcher mFetcher;
+
+    private final AtomicInteger mInFlight = new AtomicInteger();
+    private final AtomicInteger mMaxInFlight = new AtomicInteger();
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mContext.getSharedPreferences(ForecastValidatorCache.PREFS_NAME, Context.MODE_PRIVATE)
+                .edit().clear().commit();
+
+        // Answers every location with the recorded forecast, slowly, noting how many
+        // requests are open at once.
+        mServer = new LocalHttpServer(new LocalHttpServer.Responder() {
+            @Override
+            public LocalHttpServer.Response respond(String path, Map<String, String> headers) {
+                int inFlight = mInFlight.incrementAndGet();
+                int max;
+                while ((max = mMaxInFlight.get()) < inFlight &&
+                        !mMaxInFlight.compareAndSet(max, inFlight)) {
+                    // Retry
+                }
+                SystemClock.sleep(RESPONSE_DELAY_MILLIS);
+                mInFlight.decrementAndGet();
+                return new LocalHttpServer.Response(200, "OK",
+                        TestForecastJsonParser.RECORDED_FORECAST_JSON);
+            }
+        });
+
+        mFetcher = new ForecastFetcher(new ForecastValidatorCache(mContext),
+                mServer.getBaseUrl() + "/data/2.5/", MAX_REQUESTS_PER_HOST);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mServer.shutdown();
+        super.tearDown();
+    }
+
+    public void testFetchesInParallelWithinTheHostCap() throws InterruptedException {
+        long start = SystemClock.elapsedRealtime();
+        List<ForecastFetcher.Result> results =
+                new MultiLocationSync(mFetcher, 4).fetchAll(LOCATIONS);
+        long elapsed = SystemClock.elapsedRealtime() - start;
+
+        assertEquals(LOCATIONS.size(), results.size());
+        for (int i = 0; i < LOCATIONS.size(); i++) {
+            ForecastFetcher.Result result = results.get(i);
+            // Results come back in the order of the locations
+            assertEquals(LOCATIONS.get(i), result.locationSetting);
+            assertEquals(ForecastFetcher.Result.STATUS_OK, result.status);
+            assertFalse(result.values.isEmpty());
+        }
+
+        // Four threads, but never more than two requests to the one host
+        assertTrue(mMaxInFlight.get() <= MAX_REQUESTS_PER_HOST);
+        assertEquals(LOCATIONS.size(), mServer.getRequestCount());
+        // Two at a time takes about half as long as one at a time
+        assertTrue("took " + elapsed + " ms",
+                elapsed < LOCATIONS.size() * RESPONSE_DELAY_MILLIS);
+    }
+
+    public void testReportCountsEachLocation() throws IOException {
+        ForecastFetcher.Result ok = mFetcher.fetch(TestProvider.TEST_LOCATION);
+        // Nothing listens any more, so the next fetch fails
+        mServer.shutdown();
+        ForecastFetcher.Result failed = mFetcher.fetch("94043");
+
+        SyncStats stats = new SyncStats();
+        MultiLocationSync.report(Arrays.asList(ok, failed), stats);
+
+        assertEquals(ForecastFetcher.Result.STATUS_OK, ok.status);
+        assertEquals(ForecastFetcher.Result.STATUS_IO_ERROR, failed.status);
+        assertEquals(2, stats.numEntries);
+        assertEquals(1, stats.numIoExceptions);
+        assertEquals(0, stats.numParseExceptions);
+    }
+}
@@ -15,18 +15,27 @@
  */
 package com.example.android.sunshine.test;
 
+import android.content.ContentProviderClient;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentUris;
 import android.content.ContentValues;
+import android.database.ContentObserver;
 import android.database.Cursor;
 import android.net.Uri;
 import android.test.AndroidTestCase;
 import android.util.Log;
 
+import com.example.android.sunshine.data.NotificationStats;
+import com.example.android.sunshine.data.WeatherContract;
 import com.example.android.sunshine.data.WeatherContract.LocationEntry;
 import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
+import com.example.android.sunshine.data.WeatherProvider;
 
+import java.util.ArrayList;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class TestProvider extends AndroidTestCase {
 
@@ -244,6 +253,248 @@ public class TestProvider extends AndroidTestCase {
         TestDb.validateCursor(cursor, updatedValues);
     }
 
+    public void testBulkInsertSkipsUnchangedRows() {
+        Uri locationUri = mContext.getContentResolver().
+                insert(LocationEntry.CONTENT_URI, getLocationContentValues());
+        long locationRowId = ContentUris.parseId(locationUri);
+
+        ContentValues[] weatherValues = { getWeatherContentValues(locationRowId) };
+
+        int written = mContext.getContentResolver().bulkInsert(WeatherEntry.CONTENT_URI, weatherValues);
+        assertEquals(1, written);
+
+        Cursor cursor = mContext.getContentResolver().query(
+                WeatherEntry.buildWeatherLocationWithDate(TEST_LOCATION, TEST_DATE),
+                new String[] { WeatherEntry.TABLE_NAME + "." + WeatherEntry._ID },
+                null, null, null);
+        assertTrue(cursor.moveToFirst());
+        long weatherRowId = cursor.getLong(0);
+        cursor.close();
+
+        // The same forecast again shouldn't write anything
+        written = mContext.getContentResolver().bulkInsert(WeatherEntry.CONTENT_URI, weatherValues);
+        assertEquals(0, written);
+
+        // A changed forecast is updated in place, keeping its _ID
+        weatherValues[0].put(WeatherEntry.COLUMN_MAX_TEMP, 80);
+        written = mContext.getContentResolver().bulkInsert(WeatherEntry.CONTENT_URI, weatherValues);
+        assertEquals(1, written);
+
+        cursor = mContext.getContentResolver().query(WeatherEntry.CONTENT_URI,
+                null,
+                WeatherEntry._ID + " = ?",
+                new String[] { Long.toString(weatherRowId) },
+                null);
+        validateCursor(cursor, weatherValues[0]);
+    }
+
+    public void testBulkInsertLocations() {
+        ContentValues other = getLocationContentValues();
+        other.put(LocationEntry.COLUMN_LOCATION_SETTING, "94043");
+        other.put(LocationEntry.COLUMN_CITY_NAME, "Mountain View");
+
+        ContentValues[] locationValues = { getLocationContentValues(), other };
+        int written = mContext.getContentResolver().bulkInsert(LocationEntry.CONTENT_URI, locationValues);
+        assertEquals(2, written);
+
+        // A location that is already stored is ignored, not counted
+        written = mContext.getContentResolver().bulkInsert(LocationEntry.CONTENT_URI, locationValues);
+        assertEquals(0, written);
+
+        Cursor cursor = mContext.getContentResolver().query(LocationEntry.CONTENT_URI,
+                null,
+                LocationEntry.COLUMN_LOCATION_SETTING + " = ?",
+                new String[] { "94043" },
+                null);
+        validateCursor(cursor, other);
+    }
+
+    public void testApplyBatch() throws Exception {
+        ArrayList<ContentProviderOperation> operations = new ArrayList<ContentProviderOperation>();
+        operations.add(ContentProviderOperation.newInsert(LocationEntry.CONTENT_URI)
+                .withValues(getLocationContentValues())
+                .build());
+
+        ContentValues weatherValues = getWeatherContentValues(0);
+        weatherValues.remove(WeatherEntry.COLUMN_LOC_KEY);
+        operations.add(ContentProviderOperation.newInsert(WeatherEntry.CONTENT_URI)
+                .withValues(weatherValues)
+                .withValueBackReference(WeatherEntry.COLUMN_LOC_KEY, 0)
+                .build());
+
+        ContentProviderResult[] results = mContext.getContentResolver()
+                .applyBatch(WeatherContract.CONTENT_AUTHORITY, operations);
+        assertEquals(2, results.length);
+
+        long locationRowId = ContentUris.parseId(results[0].uri);
+        Cursor cursor = mContext.getContentResolver().query(
+                WeatherEntry.buildWeatherLocationWithDate(TEST_LOCATION, TEST_DATE),
+                null, null, null, null);
+        validateCursor(cursor, getWeatherContentValues(locationRowId));
+    }
+
+    public void testApplyBatchComparesEachLocationOnce() throws Exception {
+        long locationRowId = ContentUris.parseId(mContext.getContentResolver()
+                .insert(LocationEntry.CONTENT_URI, getLocationContentValues()));
+        long firstDay = WeatherContract.getDbDate(TEST_DATE);
+
+        ArrayList<ContentProviderOperation> operations = new ArrayList<ContentProviderOperation>();
+        for (int day = 0; day < 7; day++) {
+            ContentValues weatherValues = getWeatherContentValues(locationRowId);
+            weatherValues.put(WeatherEntry.COLUMN_DATE, firstDay + day);
+            if (day == 3) {
+                weatherValues.put(WeatherEntry.COLUMN_SHORT_DESC, "Rain");
+            }
+            operations.add(ContentProviderOperation.newInsert(WeatherEntry.CONTENT_URI)
+                    .withValues(weatherValues)
+                    .build());
+        }
+        // The first day of the batch is stored already, just like that
+        mContext.getContentResolver().insert(WeatherEntry.CONTENT_URI,
+                getWeatherContentValues(locationRowId));
+
+        ContentProviderClient client = mContext.getContentResolver()
+                .acquireContentProviderClient(WeatherContract.CONTENT_AUTHORITY);
+        try {
+            WeatherProvider provider = (WeatherProvider) client.getLocalContentProvider();
+            long queries = provider.getComparisonQueryCount();
+            ContentProviderResult[] results = client.applyBatch(operations);
+            assertEquals(queries + 1, provider.getComparisonQueryCount());
+
+            // The stored day kept its row, and every day was written
+            Cursor cursor = mContext.getContentResolver().query(WeatherEntry.CONTENT_URI,
+                    new String[] { WeatherEntry._ID, WeatherEntry.COLUMN_SHORT_DESC },
+                    WeatherEntry.COLUMN_LOC_KEY + " = ?",
+                    new String[] { Long.toString(locationRowId) },
+                    WeatherEntry.COLUMN_DATE + " ASC");
+            assertEquals(7, cursor.getCount());
+            for (int day = 0; day < 7; day++) {
+                assertTrue(cursor.moveToPosition(day));
+                assertEquals(ContentUris.parseId(results[day].uri), cursor.getLong(0));
+                assertEquals(day == 3 ? "Rain" : getWeatherContentValues(locationRowId)
+                        .getAsString(WeatherEntry.COLUMN_SHORT_DESC), cursor.getString(1));
+            }
+            cursor.close();
+        } finally {
+            client.release();
+        }
+    }
+
+    public void testApplyBatchNotifiesOnce() throws Exception {
+        Uri locationUri = mContext.getContentResolver().
+                insert(LocationEntry.CONTENT_URI, getLocationContentValues());
+        long locationRowId = ContentUris.parseId(locationUri);
+
+        final AtomicInteger changes = new AtomicInteger();
+        ContentObserver observer = new ContentObserver(null) {
+            @Override
+            public void onChange(boolean selfChange) {
+                changes.incrementAndGet();
+            }
+        };
+        mContext.getContentResolver().registerContentObserver(
+                WeatherEntry.CONTENT_URI, true, observer);
+
+        ArrayList<ContentProviderOperation> operations = new ArrayList<ContentProviderOperation>();
+        long firstDay = WeatherContract.getDbDate(TEST_DATE);
+        for (int day = 0; day < 3; day++) {
+            ContentValues weatherValues = getWeatherContentValues(locationRowId);
+            weatherValues.put(WeatherEntry.COLUMN_DATE, firstDay + day);
+            operations.add(ContentProviderOperation.newInsert(WeatherEntry.CONTENT_URI)
+                    .withValues(weatherValues)
+                    .build());
+        }
+        operations.add(ContentProviderOperation.newDelete(WeatherEntry.CONTENT_URI)
+                .withSelection(WeatherEntry.COLUMN_DATE + " <= ?",
+                        new String[] { Long.toString(firstDay) })
+                .build());
+
+        try {
+            ContentProviderResult[] results = mContext.getContentResolver()
+                    .applyBatch(WeatherContract.CONTENT_AUTHORITY, operations);
+            assertEquals(1, results[3].count.intValue());
+
+            // Observers are called asynchronously
+            Thread.sleep(500);
+            assertEquals(1, changes.get());
+        } finally {
+            mContext.getContentResolver().unregisterContentObserver(observer);
+        }
+    }
+
+    public void testNotificationsAreScopedToLocation() throws Exception {
+        Uri locationUri = mContext.getContentResolver().
+                insert(LocationEntry.CONTENT_URI, getLocationContentValues());
+        long locationRowId = ContentUris.parseId(locationUri);
+
+        ContentValues otherLocation = getLocationContentValues();
+        otherLocation.put(LocationEntry.COLUMN_LOCATION_SETTING, "94043");
+        mContext.getContentResolver().insert(LocationEntry.CONTENT_URI, otherLocation);
+
+        final AtomicInteger changes = new AtomicInteger();
+        final AtomicInteger otherChanges = new AtomicInteger();
+        ContentObserver observer = new ContentObserver(null) {
+            @Override
+            public void onChange(boolean selfChange) {
+                changes.incrementAndGet();
+            }
+        };
+        ContentObserver otherObserver = new ContentObserver(null) {
+            @Override
+            public void onChange(boolean selfChange) {
+                otherChanges.incrementAndGet();
+            }
+        };
+        mContext.getContentResolver().registerContentObserver(
+                WeatherEntry.buildWeatherLocation(TEST_LOCATION), true, observer);
+        mContext.getContentResolver().registerContentObserver(
+                WeatherEntry.buildWeatherLocation("94043"), true, otherObserver);
+
+        ContentValues[] weatherValues = { getWeatherContentValues(locationRowId),
+                getWeatherContentValues(locationRowId) };
+        weatherValues[1].put(WeatherEntry.COLUMN_DATE, WeatherContract.getDbDate(TEST_DATE) + 1);
+
+        NotificationStats.reset();
+        try {
+            mContext.getContentResolver().bulkInsert(WeatherEntry.CONTENT_URI, weatherValues);
+
+            // Observers are called asynchronously
+            Thread.sleep(500);
+            assertEquals(1, changes.get());
+            assertEquals(0, otherChanges.get());
+            assertEquals(1, NotificationStats.getNotificationCount(TEST_LOCATION));
+            assertEquals(0, NotificationStats.getNotificationCount("94043"));
+        } finally {
+            mContext.getContentResolver().unregisterContentObserver(observer);
+            mContext.getContentResolver().unregisterContentObserver(otherObserver);
+        }
+    }
+
+    public void testDisplayChangeIsCountedByTheProvider() throws Exception {
+        final AtomicInteger changes = new AtomicInteger();
+        ContentObserver observer = new ContentObserver(null) {
+            @Override
+            public void onChange(boolean selfChange) {
+                changes.incrementAndGet();
+            }
+        };
+        Uri weatherUri = WeatherEntry.buildWeatherLocation(TEST_LOCATION);
+        mContext.getContentResolver().registerContentObserver(weatherUri, true, observer);
+
+        NotificationStats.reset();
+        try {
+            mContext.getContentResolver().call(WeatherContract.BASE_CONTENT_URI,
+                    WeatherContract.METHOD_NOTIFY_DISPLAY_CHANGE, weatherUri.toString(), null);
+
+            // Observers are called asynchronously
+            Thread.sleep(500);
+            assertEquals(1, changes.get());
+            assertEquals(1, NotificationStats.getNotificationCount(TEST_LOCATION));
+        } finally {
+            mContext.getContentResolver().unregisterContentObserver(observer);
+        }
+    }
+
     // Make sure we can still delete after adding/updating stuff
     public void testDeleteRecordsAtEnd() {
         deleteAllRecords();
@@ -265,7 +516,7 @@ public class TestProvider extends AndroidTestCase {
     static ContentValues getWeatherContentValues(long locationRowId) {
         ContentValues weatherValues = new ContentValues();
         weatherValues.put(WeatherEntry.COLUMN_LOC_KEY, locationRowId);
-        weatherValues.put(WeatherEntry.COLUMN_DATETEXT, TEST_DATE);
+        weatherValues.put(WeatherEntry.COLUMN_DATE, WeatherContract.getDbDate(TEST_DATE));
         weatherValues.put(WeatherEntry.COLUMN_DEGREES, 1.1);
         weatherValues.put(WeatherEntry.COLUMN_HUMIDITY, 1.2);
         weatherValues.put(WeatherEntry.COLUMN_PRESSURE, 1.3);
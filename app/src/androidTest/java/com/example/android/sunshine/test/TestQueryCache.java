@@ -0,0 +1,181 @@
+package com.example.android.sunshine.test;
+
+import android.content.ContentProviderClient;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.test.AndroidTestCase;
+
+import com.example.android.sunshine.data.LocationIdCache;
+import com.example.android.sunshine.data.QueryCache;
+import com.example.android.sunshine.data.WeatherContract;
+import com.example.android.sunshine.data.WeatherContract.LocationEntry;
+import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
+import com.example.android.sunshine.data.WeatherProvider;
+
+public class TestQueryCache extends AndroidTestCase {
+
+    private static final String OTHER_LOCATION = "94043";
+
+    private ContentProviderClient mClient;
+    private QueryCache mCache;
+    private long mLocationRowId;
+    private long mOtherLocationRowId;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mContext.getContentResolver().delete(WeatherEntry.CONTENT_URI, null, null);
+        mContext.getContentResolver().delete(LocationEntry.CONTENT_URI, null, null);
+
+        mClient = mContext.getContentResolver()
+                .acquireContentProviderClient(WeatherContract.CONTENT_AUTHORITY);
+        mCache = ((WeatherProvider) mClient.getLocalContentProvider()).getQueryCache();
+        assertNotNull("The query cache is turned off", mCache);
+
+        Uri locationUri = mContext.getContentResolver().insert(
+                LocationEntry.CONTENT_URI, TestProvider.getLocationContentValues());
+        mLocationRowId = ContentUris.parseId(locationUri);
+
+        ContentValues otherLocation = TestProvider.getLocationContentValues();
+        otherLocation.put(LocationEntry.COLUMN_LOCATION_SETTING, OTHER_LOCATION);
+        mOtherLocationRowId = ContentUris.parseId(
+                mContext.getContentResolver().insert(LocationEntry.CONTENT_URI, otherLocation));
+
+        mContext.getContentResolver().bulkInsert(WeatherEntry.CONTENT_URI, new ContentValues[] {
+                TestProvider.getWeatherContentValues(mLocationRowId),
+                TestProvider.getWeatherContentValues(mOtherLocationRowId) });
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mClient.release();
+        super.tearDown();
+    }
+
+    private void queryForecast(String locationSetting) {
+        Cursor cursor = mContext.getContentResolver().query(
+                WeatherEntry.buildWeatherLocationWithStartDate(locationSetting,
+                        TestProvider.TEST_DATE),
+                null, null, null, WeatherEntry.COLUMN_DATE + " ASC");
+        assertEquals(1, cursor.getCount());
+        cursor.close();
+    }
+
+    public void testRepeatedQueryIsAHit() {
+        queryForecast(TestProvider.TEST_LOCATION);
+        long hits = mCache.getHitCount();
+        long misses = mCache.getMissCount();
+
+        queryForecast(TestProvider.TEST_LOCATION);
+        assertEquals(hits + 1, mCache.getHitCount());
+        assertEquals(misses, mCache.getMissCount());
+        assertTrue(mCache.getHitRatio() > 0);
+        assertTrue(mCache.getSizeBytes() > 0);
+    }
+
+    public void testWriteInvalidatesOnlyItsLocation() {
+        queryForecast(TestProvider.TEST_LOCATION);
+        queryForecast(OTHER_LOCATION);
+
+        ContentValues changed = TestProvider.getWeatherContentValues(mLocationRowId);
+        changed.put(WeatherEntry.COLUMN_SHORT_DESC, "Sunny");
+        assertEquals(1, mContext.getContentResolver().bulkInsert(WeatherEntry.CONTENT_URI,
+                new ContentValues[] { changed }));
+
+        long hits = mCache.getHitCount();
+        long misses = mCache.getMissCount();
+
+        // The changed location is read again, and sees the change
+        Cursor cursor = mContext.getContentResolver().query(
+                WeatherEntry.buildWeatherLocationWithStartDate(TestProvider.TEST_LOCATION,
+                        TestProvider.TEST_DATE),
+                null, null, null, WeatherEntry.COLUMN_DATE + " ASC");
+        assertTrue(cursor.moveToFirst());
+        assertEquals("Sunny",
+                cursor.getString(cursor.getColumnIndex(WeatherEntry.COLUMN_SHORT_DESC)));
+        cursor.close();
+        assertEquals(misses + 1, mCache.getMissCount());
+
+        // The other location is still cached
+        queryForecast(OTHER_LOCATION);
+        assertEquals(hits + 1, mCache.getHitCount());
+    }
+
+    public void testFreshnessUpdateInvalidatesOnlyItsLocation() {
+        queryForecast(TestProvider.TEST_LOCATION);
+        queryForecast(OTHER_LOCATION);
+        LocationIdCache.put(OTHER_LOCATION, mOtherLocationRowId, LocationIdCache.getGeneration());
+
+        long now = System.currentTimeMillis();
+        ContentValues values = new ContentValues();
+        values.put(LocationEntry.COLUMN_LAST_FETCHED, now);
+        values.put(LocationEntry.COLUMN_EXPIRES_AT, now + 1000);
+        mContext.getContentResolver().update(LocationEntry.CONTENT_URI, values,
+                LocationEntry._ID + " = ?", new String[] { Long.toString(mLocationRowId) });
+
+        // The list of the updated location shows its age, so it's read again
+        long misses = mCache.getMissCount();
+        Cursor cursor = mContext.getContentResolver().query(
+                WeatherEntry.buildWeatherLocationWithStartDate(TestProvider.TEST_LOCATION,
+                        TestProvider.TEST_DATE),
+                null, null, null, WeatherEntry.COLUMN_DATE + " ASC");
+        assertTrue(cursor.moveToFirst());
+        assertEquals(now,
+                cursor.getLong(cursor.getColumnIndex(LocationEntry.COLUMN_LAST_FETCHED)));
+        cursor.close();
+        assertEquals(misses + 1, mCache.getMissCount());
+
+        // The other location's list and every location ID are still cached
+        long hits = mCache.getHitCount();
+        queryForecast(OTHER_LOCATION);
+        assertEquals(hits + 1, mCache.getHitCount());
+        assertEquals(Long.valueOf(mOtherLocationRowId), LocationIdCache.get(OTHER_LOCATION));
+    }
+
+    public void testBookkeepingUpdateInvalidatesLocations() {
+        long now = System.currentTimeMillis();
+        assertEquals(0, queryLastViewed());
+        queryForecast(TestProvider.TEST_LOCATION);
+
+        ContentValues values = new ContentValues();
+        values.put(LocationEntry.COLUMN_LAST_VIEWED, now);
+        mContext.getContentResolver().update(LocationEntry.CONTENT_URI, values,
+                LocationEntry._ID + " = ?", new String[] { Long.toString(mLocationRowId) });
+
+        // Not notified, but not served stale either
+        assertEquals(now, queryLastViewed());
+        // No weather query reads it, so the list is still cached
+        long hits = mCache.getHitCount();
+        queryForecast(TestProvider.TEST_LOCATION);
+        assertEquals(hits + 1, mCache.getHitCount());
+    }
+
+    private long queryLastViewed() {
+        Cursor cursor = mContext.getContentResolver().query(LocationEntry.CONTENT_URI,
+                new String[] { LocationEntry.COLUMN_LAST_VIEWED },
+                LocationEntry._ID + " = ?", new String[] { Long.toString(mLocationRowId) }, null);
+        assertTrue(cursor.moveToFirst());
+        long lastViewed = cursor.getLong(0);
+        cursor.close();
+        return lastViewed;
+    }
+
+    public void testCachedRowsMatchTheDatabase() {
+        Uri uri = WeatherEntry.buildWeatherLocationWithDate(
+                TestProvider.TEST_LOCATION, TestProvider.TEST_DATE);
+        Cursor first = mContext.getContentResolver().query(uri, null, null, null, null);
+        Cursor second = mContext.getContentResolver().query(uri, null, null, null, null);
+
+        assertTrue(first.moveToFirst());
+        assertTrue(second.moveToFirst());
+        assertEquals(first.getColumnCount(), second.getColumnCount());
+        for (int i = 0; i < first.getColumnCount(); i++) {
+            assertEquals(first.getType(i), second.getType(i));
+            assertEquals(first.getString(i), second.getString(i));
+        }
+        first.close();
+        second.close();
+    }
+}
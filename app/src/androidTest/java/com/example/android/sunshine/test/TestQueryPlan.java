@@ -0,0 +1,114 @@
+package com.example.android.sunshine.test;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.example.android.sunshine.data.WeatherContract.LocationEntry;
+import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
+import com.example.android.sunshine.data.WeatherDbHelper;
+import com.example.android.sunshine.data.WeatherProvider;
+
+/**
+ * Runs EXPLAIN QUERY PLAN on the query of every WeatherProvider route, and fails if any of them
+ * has to scan a whole table.
+ */
+public class TestQueryPlan extends AndroidTestCase {
+
+    public static final String LOG_TAG = TestQueryPlan.class.getSimpleName();
+
+    private static final String SORT_BY_DATE = WeatherEntry.COLUMN_DATE + " ASC";
+
+    private WeatherDbHelper mDbHelper;
+    private SQLiteDatabase mDb;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mDbHelper = new WeatherDbHelper(mContext);
+        mDb = mDbHelper.getReadableDatabase();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mDbHelper.close();
+        super.tearDown();
+    }
+
+    private void assertNoTableScan(Uri uri, String selection, String sortOrder) {
+        String sql = WeatherProvider.buildQuery(uri, null, selection, sortOrder);
+
+        // The plan doesn't depend on the values, only on where they are used
+        int argCount = sql.length() - sql.replace("?", "").length();
+        String[] args = new String[argCount];
+        for (int i = 0; i < argCount; i++) {
+            args[i] = "1";
+        }
+
+        Cursor plan = mDb.rawQuery("EXPLAIN QUERY PLAN " + sql, args);
+        try {
+            int detailColumn = plan.getColumnIndex("detail");
+            assertTrue(plan.getCount() > 0);
+            while (plan.moveToNext()) {
+                String detail = plan.getString(detailColumn);
+                Log.v(LOG_TAG, uri + ": " + detail);
+                assertFalse("Full table scan for " + uri + ": " + detail,
+                        detail.startsWith("SCAN"));
+            }
+        } finally {
+            plan.close();
+        }
+    }
+
+    // weather/*/*
+    public void testWeatherWithLocationAndDate() {
+        assertNoTableScan(WeatherEntry.buildWeatherLocationWithDate(
+                TestProvider.TEST_LOCATION, TestProvider.TEST_DATE), null, SORT_BY_DATE);
+    }
+
+    // weather/*, as queried by the forecast list
+    public void testWeatherWithLocationAndStartDate() {
+        assertNoTableScan(WeatherEntry.buildWeatherLocationWithStartDate(
+                TestProvider.TEST_LOCATION, TestProvider.TEST_DATE), null, SORT_BY_DATE);
+    }
+
+    // weather/*
+    public void testWeatherWithLocation() {
+        assertNoTableScan(WeatherEntry.buildWeatherLocation(TestProvider.TEST_LOCATION),
+                null, SORT_BY_DATE);
+    }
+
+    // weather, as filtered by the sync adapter
+    public void testWeather() {
+        assertNoTableScan(WeatherEntry.CONTENT_URI,
+                WeatherEntry.COLUMN_DATE + " <= ?", null);
+        assertNoTableScan(WeatherEntry.CONTENT_URI,
+                WeatherEntry.COLUMN_LOC_KEY + " = ? AND " +
+                        WeatherEntry.COLUMN_DATE + " BETWEEN ? AND ?", null);
+        // a batch of the retention's deletes
+        assertNoTableScan(WeatherEntry.CONTENT_URI,
+                WeatherEntry._ID + " IN (SELECT " + WeatherEntry._ID + " FROM " +
+                        WeatherEntry.TABLE_NAME + " WHERE " + WeatherEntry.COLUMN_LOC_KEY +
+                        " = ? AND " + WeatherEntry.COLUMN_DATE + " < ? LIMIT 500)", null);
+    }
+
+    // location/#
+    public void testLocationId() {
+        assertNoTableScan(LocationEntry.buildLocationUri(1L), null, null);
+    }
+
+    // location, as filtered by the sync adapter
+    public void testLocation() {
+        assertNoTableScan(LocationEntry.CONTENT_URI,
+                LocationEntry.COLUMN_LOCATION_SETTING + " = ?", null);
+    }
+
+    public void testLocationDateIndexExists() {
+        Cursor cursor = mDb.rawQuery("SELECT name FROM sqlite_master WHERE type = 'index' " +
+                "AND name = ?", new String[] { WeatherDbHelper.INDEX_WEATHER_LOCATION_DATE });
+        assertEquals(1, cursor.getCount());
+        cursor.close();
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.android.sunshine.test;
+
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.example.android.sunshine.RelativeDayLabels;
+import com.example.android.sunshine.Utility;
+import com.example.android.sunshine.data.DateCodec;
+
+import java.util.Locale;
+
+public class TestRelativeDayLabels extends AndroidTestCase {
+
+    public static final String LOG_TAG = TestRelativeDayLabels.class.getSimpleName();
+
+    public void testLabelsMatchUtility() {
+        RelativeDayLabels labels = new RelativeDayLabels(mContext);
+        long today = DateCodec.today();
+
+        // The window, and a few days either side of it
+        for (long day = today - 3; day < today + 20; day++) {
+            assertEquals(Utility.getFriendlyDayString(mContext, day), labels.get(day));
+        }
+    }
+
+    public void testRepeatedLookupIsTheSameLabel() {
+        RelativeDayLabels labels = new RelativeDayLabels(mContext);
+        long today = DateCodec.today();
+
+        for (long day = today; day < today + 14; day++) {
+            assertSame(labels.get(day), labels.get(day));
+        }
+    }
+
+    public void testLocaleChangeRebuildsLabels() {
+        Locale locale = Locale.getDefault();
+        try {
+            Locale.setDefault(Locale.US);
+            RelativeDayLabels labels = new RelativeDayLabels(mContext);
+            long day = DateCodec.today() + 5;
+            String label = labels.get(day);
+
+            Locale.setDefault(Locale.GERMANY);
+            assertFalse(label.equals(labels.get(day)));
+            assertEquals(DateCodec.formatDayName(day), labels.get(day));
+        } finally {
+            Locale.setDefault(locale);
+        }
+    }
+
+    // Not an assertion, just logs what binding a scrolled two-week list costs either way.
+    public void testLookupBenchmark() {
+        final int frames = 200;
+        RelativeDayLabels labels = new RelativeDayLabels(mContext);
+        long today = DateCodec.today();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < frames; i++) {
+            for (long day = today; day < today + 14; day++) {
+                Utility.getFriendlyDayString(mContext, day);
+            }
+        }
+        long formatNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < frames; i++) {
+            for (long day = today; day < today + 14; day++) {
+                labels.get(day);
+            }
+        }
+        long lookupNanos = System.nanoTime() - start;
+
+        Log.d(LOG_TAG, "formatting: " + (formatNanos / frames) + " ns/list, " +
+                "table: " + (lookupNanos / frames) + " ns/list");
+    }
+}
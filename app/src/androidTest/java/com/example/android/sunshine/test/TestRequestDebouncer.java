@@ -0,0 +1,21 @@
+package com.example.android.sunshine.test;
+
+import android.test.AndroidTestCase;
+
+import com.example.android.sunshine.sync.RequestDebouncer;
+
+public class TestRequestDebouncer extends AndroidTestCase {
+
+    public void testDebouncerCoalescesWithinTheWindow() {
+        RequestDebouncer debouncer = new RequestDebouncer(1000);
+
+        assertTrue(debouncer.tryAcquire(TestProvider.TEST_LOCATION, 0));
+        assertFalse(debouncer.tryAcquire(TestProvider.TEST_LOCATION, 999));
+        // Another location has a window of its own
+        assertTrue(debouncer.tryAcquire("94043", 500));
+        assertTrue(debouncer.tryAcquire(TestProvider.TEST_LOCATION, 1000));
+        assertFalse(debouncer.tryAcquire("94043", 1000));
+
+        assertEquals(2, debouncer.getCoalescedCount());
+    }
+}
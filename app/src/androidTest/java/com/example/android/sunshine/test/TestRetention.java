@@ -0,0 +1,130 @@
+package com.example.android.sunshine.test;
+
+import android.content.ContentProviderClient;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.test.AndroidTestCase;
+
+import com.example.android.sunshine.data.WeatherContract;
+import com.example.android.sunshine.data.WeatherContract.LocationEntry;
+import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
+import com.example.android.sunshine.data.WeatherDbHelper;
+import com.example.android.sunshine.sync.ForecastRetention;
+import com.example.android.sunshine.sync.ForecastValidatorCache;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+public class TestRetention extends AndroidTestCase {
+
+    private static final int EVICT_AFTER_DAYS = 30;
+    private static final String STALE_LOCATION = "94043";
+    private static final String HISTORY_LOCATION = "10001";
+
+    private long mNow;
+    private long mToday;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mContext.getContentResolver().delete(WeatherEntry.CONTENT_URI, null, null);
+        mContext.getContentResolver().delete(LocationEntry.CONTENT_URI, null, null);
+
+        mNow = System.currentTimeMillis();
+        mToday = WeatherContract.getDbDate(new Date(mNow));
+    }
+
+    private long insertLocation(String locationSetting, long lastViewed, int historyDays) {
+        ContentValues values = TestProvider.getLocationContentValues();
+        values.put(LocationEntry.COLUMN_LOCATION_SETTING, locationSetting);
+        values.put(LocationEntry.COLUMN_LAST_VIEWED, lastViewed);
+        values.put(LocationEntry.COLUMN_HISTORY_DAYS, historyDays);
+        long locationRowId = ContentUris.parseId(
+                mContext.getContentResolver().insert(LocationEntry.CONTENT_URI, values));
+
+        // A week of history and a couple of days of forecast
+        ContentValues[] weatherValues = new ContentValues[9];
+        for (int i = 0; i < weatherValues.length; i++) {
+            weatherValues[i] = TestProvider.getWeatherContentValues(locationRowId);
+            weatherValues[i].put(WeatherEntry.COLUMN_DATE, mToday - 7 + i);
+        }
+        mContext.getContentResolver().bulkInsert(WeatherEntry.CONTENT_URI, weatherValues);
+        return locationRowId;
+    }
+
+    private long getOldestDate(long locationRowId) {
+        Cursor cursor = mContext.getContentResolver().query(WeatherEntry.CONTENT_URI,
+                new String[] { "MIN(" + WeatherEntry.COLUMN_DATE + ")" },
+                WeatherEntry.COLUMN_LOC_KEY + " = ?",
+                new String[] { Long.toString(locationRowId) }, null);
+        assertTrue(cursor.moveToFirst());
+        long date = cursor.isNull(0) ? -1 : cursor.getLong(0);
+        cursor.close();
+        return date;
+    }
+
+    private static String getIfNoneMatch(ForecastValidatorCache validatorCache,
+                                         String locationSetting) throws IOException {
+        // Never connected, only used to read back the request headers
+        HttpURLConnection connection =
+                (HttpURLConnection) new URL("http://localhost/").openConnection();
+        validatorCache.applyTo(connection, locationSetting);
+        return connection.getRequestProperty("If-None-Match");
+    }
+
+    public void testPurge() throws Exception {
+        long staleViewed = mNow - TimeUnit.DAYS.toMillis(EVICT_AFTER_DAYS + 1);
+        long preferred = insertLocation(TestProvider.TEST_LOCATION, staleViewed, 0);
+        long stale = insertLocation(STALE_LOCATION, staleViewed, 0);
+        long history = insertLocation(HISTORY_LOCATION, mNow, 2);
+
+        ContentProviderClient client = mContext.getContentResolver()
+                .acquireContentProviderClient(WeatherContract.CONTENT_AUTHORITY);
+        ForecastValidatorCache validatorCache = new ForecastValidatorCache(mContext);
+        validatorCache.put(STALE_LOCATION, "\"stale\"", null);
+        validatorCache.put(HISTORY_LOCATION, "\"history\"", null);
+        ForecastRetention retention = new ForecastRetention(client, validatorCache,
+                EVICT_AFTER_DAYS);
+        try {
+            retention.purge(TestProvider.TEST_LOCATION, mNow);
+        } finally {
+            client.release();
+        }
+
+        // The preferred location is kept however long ago it was viewed, from today on
+        assertEquals(mToday, getOldestDate(preferred));
+        // The location nobody looked at is gone, weather and all
+        assertEquals(-1, getOldestDate(stale));
+        // The history depth is per location
+        assertEquals(mToday - 2, getOldestDate(history));
+
+        assertEquals(1, retention.getEvictedLocations());
+        // Only the evicted location forgets its validators
+        assertNull(getIfNoneMatch(validatorCache, STALE_LOCATION));
+        assertEquals("\"history\"", getIfNoneMatch(validatorCache, HISTORY_LOCATION));
+        assertEquals(7 + 9 + 5, retention.getDeletedRows());
+
+        Cursor cursor = mContext.getContentResolver().query(LocationEntry.CONTENT_URI, null,
+                LocationEntry.COLUMN_LOCATION_SETTING + " = ?", new String[] { STALE_LOCATION },
+                null);
+        assertEquals(0, cursor.getCount());
+        cursor.close();
+    }
+
+    public void testReclaimSpace() {
+        WeatherDbHelper dbHelper = new WeatherDbHelper(mContext);
+
+        dbHelper.reclaimSpace();
+        // Once switched, only free pages are released
+        assertTrue(dbHelper.reclaimSpace() >= 0);
+        assertEquals(2, DatabaseUtils.longForQuery(dbHelper.getReadableDatabase(),
+                "PRAGMA auto_vacuum", null));
+
+        dbHelper.close();
+    }
+}
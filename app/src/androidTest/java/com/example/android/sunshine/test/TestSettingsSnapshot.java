@@ -0,0 +1,76 @@
+package com.example.android.sunshine.test;
+
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.preference.PreferenceManager;
+import android.test.AndroidTestCase;
+
+import com.example.android.sunshine.R;
+import com.example.android.sunshine.SettingsSnapshot;
+import com.example.android.sunshine.Utility;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class TestSettingsSnapshot extends AndroidTestCase {
+
+    private SharedPreferences mPrefs;
+    private String mLocation;
+    private String mUnits;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mPrefs = PreferenceManager.getDefaultSharedPreferences(mContext);
+        mLocation = mPrefs.getString(mContext.getString(R.string.pref_location_key), null);
+        mUnits = mPrefs.getString(mContext.getString(R.string.pref_units_key), null);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        commitOnMainThread(mPrefs.edit()
+                .putString(mContext.getString(R.string.pref_location_key), mLocation)
+                .putString(mContext.getString(R.string.pref_units_key), mUnits));
+        super.tearDown();
+    }
+
+    // Commits on the main thread, as SettingsActivity does, and waits for it
+    private static void commitOnMainThread(final SharedPreferences.Editor editor)
+            throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(1);
+        new Handler(Looper.getMainLooper()).post(new Runnable() {
+            @Override
+            public void run() {
+                editor.commit();
+                done.countDown();
+            }
+        });
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+    }
+
+    public void testEditsReplaceTheSnapshot() throws InterruptedException {
+        SettingsSnapshot before = SettingsSnapshot.get(mContext);
+
+        commitOnMainThread(mPrefs.edit()
+                .putString(mContext.getString(R.string.pref_location_key), "94043")
+                .putString(mContext.getString(R.string.pref_units_key),
+                        mContext.getString(R.string.pref_units_imperial)));
+
+        assertEquals("94043", Utility.getPreferredLocation(mContext));
+        assertFalse(Utility.isMetric(mContext));
+        assertNotSame(before, SettingsSnapshot.get(mContext));
+
+        commitOnMainThread(mPrefs.edit()
+                .putString(mContext.getString(R.string.pref_units_key),
+                        mContext.getString(R.string.pref_units_metric)));
+        assertTrue(Utility.isMetric(mContext));
+    }
+
+    public void testUnrelatedEditKeepsTheSnapshot() throws InterruptedException {
+        SettingsSnapshot before = SettingsSnapshot.get(mContext);
+        commitOnMainThread(mPrefs.edit()
+                .putLong(mContext.getString(R.string.pref_last_notification), 1));
+        assertSame(before, SettingsSnapshot.get(mContext));
+    }
+}
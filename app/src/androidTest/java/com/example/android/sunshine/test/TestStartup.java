@@ -0,0 +1,38 @@
+package com.example.android.sunshine.test;
+
+import android.os.SystemClock;
+import android.test.AndroidTestCase;
+
+import com.example.android.sunshine.StartupTrace;
+
+public class TestStartup extends AndroidTestCase {
+
+    @Override
+    protected void tearDown() throws Exception {
+        StartupTrace.reset();
+        super.tearDown();
+    }
+
+    public void testMarksAreKeptOnce() {
+        StartupTrace.reset();
+        assertEquals(StartupTrace.UNSET, StartupTrace.getFirstFrameMillis());
+
+        StartupTrace.markProcessStart();
+        SystemClock.sleep(5);
+        StartupTrace.markFirstFrame();
+        SystemClock.sleep(5);
+        StartupTrace.markFirstForecastBound();
+
+        long firstFrame = StartupTrace.getFirstFrameMillis();
+        long firstForecast = StartupTrace.getFirstForecastBoundMillis();
+        assertTrue(firstFrame > 0);
+        assertTrue(firstForecast > firstFrame);
+
+        // Later activities mark again, which changes nothing
+        SystemClock.sleep(5);
+        StartupTrace.markFirstFrame();
+        StartupTrace.markFirstForecastBound();
+        assertEquals(firstFrame, StartupTrace.getFirstFrameMillis());
+        assertEquals(firstForecast, StartupTrace.getFirstForecastBoundMillis());
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.android.sunshine.test;
+
+import android.test.AndroidTestCase;
+import android.text.format.DateUtils;
+import android.util.Log;
+
+import com.example.android.sunshine.R;
+import com.example.android.sunshine.sync.SyncScheduler;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class TestSyncScheduler extends AndroidTestCase {
+
+    public static final String LOG_TAG = TestSyncScheduler.class.getSimpleName();
+
+    private static final long MIN_INTERVAL = 30 * DateUtils.MINUTE_IN_MILLIS;
+    private static final long MAX_INTERVAL = 12 * DateUtils.HOUR_IN_MILLIS;
+    private static final int NOON = 12;
+    private static final int NIGHT = 3;
+
+    public void testIntervalsStayWithinTheBounds() {
+        SyncScheduler scheduler = new SyncScheduler(MIN_INTERVAL, MAX_INTERVAL, 0);
+
+        assertEquals(MIN_INTERVAL, scheduler.clamp(0));
+        assertEquals(MAX_INTERVAL, scheduler.clamp(DateUtils.DAY_IN_MILLIS));
+        assertEquals(MIN_INTERVAL, scheduler.getNextInterval(1, NOON, true));
+        assertEquals(SyncScheduler.STEADY_INTERVAL_MILLIS,
+                scheduler.getNextInterval(0, NOON, true));
+        // Out of range ratios count as the nearest end
+        assertEquals(MIN_INTERVAL, scheduler.getNextInterval(5, NOON, true));
+        assertEquals(SyncScheduler.STEADY_INTERVAL_MILLIS,
+                scheduler.getNextInterval(-1, NOON, true));
+    }
+
+    public void testChangesShortenTheInterval() {
+        SyncScheduler scheduler = new SyncScheduler(MIN_INTERVAL, MAX_INTERVAL, 0);
+
+        long previous = scheduler.getNextInterval(0, NOON, true);
+        for (double ratio = 0.25; ratio <= 1; ratio += 0.25) {
+            long interval = scheduler.getNextInterval(ratio, NOON, true);
+            assertTrue(interval < previous);
+            previous = interval;
+        }
+    }
+
+    public void testNightAndDisuseLengthenTheInterval() {
+        SyncScheduler scheduler = new SyncScheduler(MIN_INTERVAL, MAX_INTERVAL, 0);
+        long day = scheduler.getNextInterval(0.5, NOON, true);
+
+        assertTrue(scheduler.getNextInterval(0.5, NIGHT, true) > day);
+        assertTrue(scheduler.getNextInterval(0.5, NOON, false) > day);
+        assertEquals(MAX_INTERVAL, scheduler.getNextInterval(0, NIGHT, false));
+    }
+
+    public void testJitterMovesIntervalsApartWithinTheBounds() {
+        double jitter = SyncScheduler.MAX_JITTER;
+        SyncScheduler early = new SyncScheduler(MIN_INTERVAL, MAX_INTERVAL, -jitter);
+        SyncScheduler late = new SyncScheduler(MIN_INTERVAL, MAX_INTERVAL, jitter);
+
+        for (double ratio = 0; ratio <= 1; ratio += 0.1) {
+            for (int hour = 0; hour < 24; hour++) {
+                long earlyInterval = early.getNextInterval(ratio, hour, false);
+                long lateInterval = late.getNextInterval(ratio, hour, true);
+                assertTrue(earlyInterval >= MIN_INTERVAL && earlyInterval <= MAX_INTERVAL);
+                assertTrue(lateInterval >= MIN_INTERVAL && lateInterval <= MAX_INTERVAL);
+            }
+        }
+        // Away from the bounds, installs with a different phase sync at different times
+        assertTrue(early.getNextInterval(0.5, NOON, true) <
+                late.getNextInterval(0.5, NOON, true));
+        // Against a bound, the phase moves away from it instead
+        assertTrue(late.getNextInterval(0, NIGHT, false) < MAX_INTERVAL);
+        assertTrue(early.getNextInterval(1, NOON, true) > MIN_INTERVAL);
+    }
+
+    public void testJitterIsKeptPerInstall() {
+        SyncScheduler first = SyncScheduler.fromContext(mContext);
+        SyncScheduler second = SyncScheduler.fromContext(mContext);
+
+        assertEquals(first.getNextInterval(0.3, NOON, true),
+                second.getNextInterval(0.3, NOON, true));
+    }
+
+    public void testReplayedWeek() {
+        long freshness = mContext.getResources().getInteger(R.integer.sync_freshness_minutes) *
+                DateUtils.MINUTE_IN_MILLIS;
+        SyncSimulator simulator = new SyncSimulator(buildChanges(), buildOpens(), freshness,
+                DateUtils.WEEK_IN_MILLIS);
+
+        SyncSimulator.Report adaptive = simulator.run(
+                new SyncScheduler(MIN_INTERVAL, MAX_INTERVAL, SyncScheduler.MAX_JITTER / 2));
+        SyncSimulator.Report fixed = simulator.run(new SyncScheduler(
+                SyncScheduler.STEADY_INTERVAL_MILLIS, SyncScheduler.STEADY_INTERVAL_MILLIS, 0));
+        Log.d(LOG_TAG, "Adaptive: " + adaptive);
+        Log.d(LOG_TAG, "Fixed: " + fixed);
+
+        assertTrue(adaptive.minIntervalMillis >= MIN_INTERVAL);
+        assertTrue(adaptive.maxIntervalMillis <= MAX_INTERVAL);
+        assertEquals(SyncScheduler.STEADY_INTERVAL_MILLIS, fixed.minIntervalMillis);
+        assertEquals(SyncScheduler.STEADY_INTERVAL_MILLIS, fixed.maxIntervalMillis);
+        assertTrue(adaptive.requests > 0 && fixed.requests > 0);
+    }
+
+    /**
+     * Four model runs a day that each move a day or two of the forecast, and a stormy third
+     * day on which it's revised every two hours.
+     */
+    private static List<SyncSimulator.Change> buildChanges() {
+        List<SyncSimulator.Change> changes = new ArrayList<SyncSimulator.Change>();
+        for (int day = 0; day < 7; day++) {
+            long midnight = day * DateUtils.DAY_IN_MILLIS;
+            if (day == 2) {
+                for (int hour = 1; hour < 24; hour += 2) {
+                    changes.add(new SyncSimulator.Change(
+                            midnight + hour * DateUtils.HOUR_IN_MILLIS, 0.6));
+                }
+            } else {
+                for (int hour = 3; hour < 24; hour += 6) {
+                    changes.add(new SyncSimulator.Change(midnight +
+                            hour * DateUtils.HOUR_IN_MILLIS + 30 * DateUtils.MINUTE_IN_MILLIS,
+                            0.15));
+                }
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * The app is opened at breakfast, lunch and in the evening, except on the weekend.
+     */
+    private static List<Long> buildOpens() {
+        List<Long> opens = new ArrayList<Long>();
+        for (int day = 0; day < 5; day++) {
+            long midnight = day * DateUtils.DAY_IN_MILLIS;
+            opens.add(midnight + 7 * DateUtils.HOUR_IN_MILLIS + 45 * DateUtils.MINUTE_IN_MILLIS);
+            opens.add(midnight + 12 * DateUtils.HOUR_IN_MILLIS + 30 * DateUtils.MINUTE_IN_MILLIS);
+            opens.add(midnight + 19 * DateUtils.HOUR_IN_MILLIS);
+        }
+        return opens;
+    }
+}
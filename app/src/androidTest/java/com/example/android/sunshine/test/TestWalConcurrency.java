@@ -0,0 +1,163 @@
+package com.example.android.sunshine.test;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.example.android.sunshine.data.WeatherContract;
+import com.example.android.sunshine.data.WeatherContract.LocationEntry;
+import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
+import com.example.android.sunshine.data.WeatherDbHelper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Queries the forecast the way the loaders do, from a few threads at once, while a large bulk
+ * insert holds the write transaction, and compares the reader latencies with and without
+ * write-ahead logging.
+ */
+public class TestWalConcurrency extends AndroidTestCase {
+
+    public static final String LOG_TAG = TestWalConcurrency.class.getSimpleName();
+
+    private static final String TEST_DATABASE_NAME = "weather_stress.db";
+
+    private static final int LOCATIONS = 20;
+    private static final int DAYS = 200;
+    private static final int READERS = 3;
+
+    private static class Run {
+        final List<Long> latencies;
+        final long writerMillis;
+
+        Run(List<Long> latencies, long writerMillis) {
+            this.latencies = latencies;
+            this.writerMillis = writerMillis;
+        }
+    }
+
+    public void testWalReadersDontWaitForTheWriter() throws Exception {
+        Run wal = runReadersDuringBulkInsert(true);
+        Run rollbackJournal = runReadersDuringBulkInsert(false);
+        assertFalse(wal.latencies.isEmpty());
+        assertFalse(rollbackJournal.latencies.isEmpty());
+
+        // Without WAL a reader waits out the whole insert; with it, even the slow reads are
+        // a fraction of the insert and well under the slow reads without it
+        long walP99 = percentileMicros(wal.latencies, 99);
+        assertTrue("WAL p99 " + walP99 + " us during a " + wal.writerMillis + " ms insert",
+                walP99 < wal.writerMillis * 1000 / 2);
+        assertTrue("WAL p99 " + walP99 + " us, rollback journal p99 " +
+                        percentileMicros(rollbackJournal.latencies, 99) + " us",
+                walP99 < percentileMicros(rollbackJournal.latencies, 99));
+    }
+
+    private Run runReadersDuringBulkInsert(boolean writeAheadLogging) throws Exception {
+        mContext.deleteDatabase(TEST_DATABASE_NAME);
+        final WeatherDbHelper dbHelper =
+                new WeatherDbHelper(mContext, TEST_DATABASE_NAME, writeAheadLogging);
+
+        final SQLiteDatabase db = dbHelper.getWritableDatabase();
+        ContentValues location = TestDb.createNorthPoleLocationValues();
+        final long locationRowId = db.insert(LocationEntry.TABLE_NAME, null, location);
+        db.insert(WeatherEntry.TABLE_NAME, null, TestDb.createWeatherValues(locationRowId));
+
+        final CountDownLatch writerStarted = new CountDownLatch(1);
+        final List<Long> latencies = Collections.synchronizedList(new ArrayList<Long>());
+        final boolean[] writerDone = { false };
+
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                long firstDay = WeatherContract.getDbDate("20141206");
+                db.beginTransaction();
+                try {
+                    writerStarted.countDown();
+                    for (int l = 0; l < LOCATIONS; l++) {
+                        for (int d = 0; d < DAYS; d++) {
+                            ContentValues values = TestDb.createWeatherValues(locationRowId + l);
+                            values.put(WeatherEntry.COLUMN_DATE, firstDay + d);
+                            db.insert(WeatherEntry.TABLE_NAME, null, values);
+                        }
+                    }
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                    synchronized (writerDone) {
+                        writerDone[0] = true;
+                    }
+                }
+            }
+        });
+
+        Runnable reader = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    writerStarted.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                SQLiteDatabase readable = dbHelper.getReadableDatabase();
+                boolean done;
+                do {
+                    long start = System.nanoTime();
+                    Cursor cursor = readable.rawQuery("SELECT * FROM " + WeatherEntry.TABLE_NAME +
+                            " INNER JOIN " + LocationEntry.TABLE_NAME + " ON " +
+                            WeatherEntry.TABLE_NAME + "." + WeatherEntry.COLUMN_LOC_KEY + " = " +
+                            LocationEntry.TABLE_NAME + "." + LocationEntry._ID + " WHERE " +
+                            LocationEntry.COLUMN_LOCATION_SETTING + " = ? ORDER BY " +
+                            WeatherEntry.COLUMN_DATE, new String[] { "99705" });
+                    cursor.getCount();
+                    cursor.close();
+                    latencies.add(System.nanoTime() - start);
+
+                    synchronized (writerDone) {
+                        done = writerDone[0];
+                    }
+                } while (!done);
+            }
+        };
+        Thread[] readers = new Thread[READERS];
+        for (int i = 0; i < READERS; i++) {
+            readers[i] = new Thread(reader);
+        }
+
+        long start = System.nanoTime();
+        writer.start();
+        for (Thread thread : readers) {
+            thread.start();
+        }
+        writer.join();
+        for (Thread thread : readers) {
+            thread.join();
+        }
+        long writerMillis = (System.nanoTime() - start) / 1000000;
+
+        dbHelper.close();
+        mContext.deleteDatabase(TEST_DATABASE_NAME);
+
+        List<Long> sorted = new ArrayList<Long>(latencies);
+        Collections.sort(sorted);
+        Log.i(LOG_TAG, "WAL " + (writeAheadLogging ? "on" : "off") + ": " +
+                sorted.size() + " reads during a " + writerMillis + " ms insert of " +
+                (LOCATIONS * DAYS) + " rows, latency p50 " + percentileMicros(sorted, 50) +
+                " us, p90 " + percentileMicros(sorted, 90) +
+                " us, p99 " + percentileMicros(sorted, 99) + " us");
+
+        return new Run(sorted, writerMillis);
+    }
+
+    private static long percentileMicros(List<Long> sorted, int percentile) {
+        if (sorted.isEmpty()) {
+            return 0;
+        }
+        int index = Math.min(sorted.size() - 1, sorted.size() * percentile / 100);
+        return sorted.get(index) / 1000;
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.android.sunshine.test;
+
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.example.android.sunshine.R;
+import com.example.android.sunshine.WeatherConditions;
+
+public class TestWeatherConditions extends AndroidTestCase {
+
+    public static final String LOG_TAG = TestWeatherConditions.class.getSimpleName();
+
+    // Every code listed at
+    // http://bugs.openweathermap.org/projects/api/wiki/Weather_Condition_Codes
+    private static final int[] DOCUMENTED_CODES = {
+            200, 201, 202, 210, 211, 212, 221, 230, 231, 232,
+            300, 301, 302, 310, 311, 312, 313, 314, 321,
+            500, 501, 502, 503, 504, 511, 520, 521, 522, 531,
+            600, 601, 602, 611, 612, 615, 616, 620, 621, 622,
+            701, 711, 721, 731, 741, 751, 761, 762, 771, 781,
+            800, 801, 802, 803, 804
+    };
+
+    public void testEveryDocumentedCodeHasACondition() {
+        for (int code : DOCUMENTED_CODES) {
+            WeatherConditions.Condition condition = WeatherConditions.get(code);
+            assertTrue("No icon for " + code, condition.iconResource != -1);
+            assertEquals("Icon and art disagree for " + code,
+                    condition.iconResource, iconForArt(condition.artResource));
+            assertTrue(condition.category != WeatherConditions.CATEGORY_UNKNOWN);
+            assertTrue(condition.severity >= WeatherConditions.SEVERITY_NONE &&
+                    condition.severity <= WeatherConditions.SEVERITY_SEVERE);
+        }
+    }
+
+    public void testSnowUsesSnowArt() {
+        for (int code = 600; code <= 622; code++) {
+            assertEquals(R.drawable.art_snow, WeatherConditions.get(code).artResource);
+            assertEquals(WeatherConditions.CATEGORY_SNOW, WeatherConditions.get(code).category);
+        }
+    }
+
+    public void testMatchesTheChains() {
+        for (int code = -1; code < 1000; code++) {
+            WeatherConditions.Condition condition = WeatherConditions.get(code);
+
+            // The chains had no entry for these
+            boolean added = code == 762 || (code >= 771 && code < 781);
+            if (!added) {
+                assertEquals("Icon changed for " + code,
+                        legacyIcon(code), condition.iconResource);
+            }
+            // ... and showed rain art for snow
+            boolean snow = code >= 600 && code <= 622;
+            if (!added && !snow) {
+                assertEquals("Art changed for " + code, legacyArt(code), condition.artResource);
+            }
+        }
+    }
+
+    public void testUnknownCodes() {
+        assertSame(WeatherConditions.UNKNOWN, WeatherConditions.get(0));
+        assertSame(WeatherConditions.UNKNOWN, WeatherConditions.get(199));
+        assertSame(WeatherConditions.UNKNOWN, WeatherConditions.get(400));
+        assertSame(WeatherConditions.UNKNOWN, WeatherConditions.get(900));
+        assertEquals(-1, WeatherConditions.UNKNOWN.iconResource);
+    }
+
+    // Not an assertion, just logs how the table compares with the chains it replaced.
+    public void testLookupBenchmark() {
+        final int iterations = 200;
+        int sink = 0;
+
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            for (int code : DOCUMENTED_CODES) {
+                sink += legacyIcon(code) + legacyArt(code);
+            }
+        }
+        long chainNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            for (int code : DOCUMENTED_CODES) {
+                WeatherConditions.Condition condition = WeatherConditions.get(code);
+                sink += condition.iconResource + condition.artResource;
+            }
+        }
+        long tableNanos = System.nanoTime() - start;
+
+        int lookups = iterations * DOCUMENTED_CODES.length;
+        Log.d(LOG_TAG, "chains: " + (chainNanos / lookups) + " ns/lookup, " +
+                "table: " + (tableNanos / lookups) + " ns/lookup (" + sink + ")");
+    }
+
+    private static int iconForArt(int art) {
+        if (art == R.drawable.art_storm) return R.drawable.ic_storm;
+        if (art == R.drawable.art_light_rain) return R.drawable.ic_light_rain;
+        if (art == R.drawable.art_rain) return R.drawable.ic_rain;
+        if (art == R.drawable.art_snow) return R.drawable.ic_snow;
+        if (art == R.drawable.art_fog) return R.drawable.ic_fog;
+        if (art == R.drawable.art_clear) return R.drawable.ic_clear;
+        if (art == R.drawable.art_light_clouds) return R.drawable.ic_light_clouds;
+        if (art == R.drawable.art_clouds) return R.drawable.ic_cloudy;
+        return -1;
+    }
+
+    // Utility.getIconResourceForWeatherCondition before the table
+    private static int legacyIcon(int weatherId) {
+        if (weatherId >= 200 && weatherId <= 232) {
+            return R.drawable.ic_storm;
+        } else if (weatherId >= 300 && weatherId <= 321) {
+            return R.drawable.ic_light_rain;
+        } else if (weatherId >= 500 && weatherId <= 504) {
+            return R.drawable.ic_rain;
+        } else if (weatherId == 511) {
+            return R.drawable.ic_snow;
+        } else if (weatherId >= 520 && weatherId <= 531) {
+            return R.drawable.ic_rain;
+        } else if (weatherId >= 600 && weatherId <= 622) {
+            return R.drawable.ic_snow;
+        } else if (weatherId >= 701 && weatherId <= 761) {
+            return R.drawable.ic_fog;
+        } else if (weatherId == 761 || weatherId == 781) {
+            return R.drawable.ic_storm;
+        } else if (weatherId == 800) {
+            return R.drawable.ic_clear;
+        } else if (weatherId == 801) {
+            return R.drawable.ic_light_clouds;
+        } else if (weatherId >= 802 && weatherId <= 804) {
+            return R.drawable.ic_cloudy;
+        }
+        return -1;
+    }
+
+    // Utility.getArtResourceForWeatherCondition before the table
+    private static int legacyArt(int weatherId) {
+        if (weatherId >= 200 && weatherId <= 232) {
+            return R.drawable.art_storm;
+        } else if (weatherId >= 300 && weatherId <= 321) {
+            return R.drawable.art_light_rain;
+        } else if (weatherId >= 500 && weatherId <= 504) {
+            return R.drawable.art_rain;
+        } else if (weatherId == 511) {
+            return R.drawable.art_snow;
+        } else if (weatherId >= 520 && weatherId <= 531) {
+            return R.drawable.art_rain;
+        } else if (weatherId >= 600 && weatherId <= 622) {
+            return R.drawable.art_rain;
+        } else if (weatherId >= 701 && weatherId <= 761) {
+            return R.drawable.art_fog;
+        } else if (weatherId == 761 || weatherId == 781) {
+            return R.drawable.art_storm;
+        } else if (weatherId == 800) {
+            return R.drawable.art_clear;
+        } else if (weatherId == 801) {
+            return R.drawable.art_light_clouds;
+        } else if (weatherId >= 802 && weatherId <= 804) {
+            return R.drawable.art_clouds;
+        }
+        return -1;
+    }
+}
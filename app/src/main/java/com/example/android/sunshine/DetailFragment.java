@@ -1,9 +1,11 @@
 package com.example.android.sunshine;
 
 import android.content.Intent;
+import android.database.ContentObserver;
 import android.database.Cursor;
 import android.net.Uri;
 import android.os.Bundle;
+import android.os.Handler;
 import android.support.v4.app.Fragment;
 import android.support.v4.app.LoaderManager;
 import android.support.v4.content.CursorLoader;
@@ -20,6 +22,7 @@ import android.view.ViewGroup;
 import android.widget.ImageView;
 import android.widget.TextView;
 
+import com.example.android.sunshine.data.NotificationStats;
 import com.example.android.sunshine.data.WeatherContract;
 
 /**
@@ -42,7 +45,7 @@ public class DetailFragment extends Fragment implements LoaderManager.LoaderCall
     private static final String[] FORECAST_COLUMNS = {
             WeatherContract.WeatherEntry.TABLE_NAME + "." + WeatherContract.WeatherEntry._ID,
             WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
-            WeatherContract.WeatherEntry.COLUMN_DATETEXT,
+            WeatherContract.WeatherEntry.COLUMN_DATE,
             WeatherContract.WeatherEntry.COLUMN_SHORT_DESC,
             WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
             WeatherContract.WeatherEntry.COLUMN_MIN_TEMP,
@@ -51,6 +54,26 @@ public class DetailFragment extends Fragment implements LoaderManager.LoaderCall
             WeatherContract.WeatherEntry.COLUMN_PRESSURE,
             WeatherContract.WeatherEntry.COLUMN_DEGREES,
     };
+
+    // these indices must match the projection
+    private static final int COL_WEATHER_ID = 1;
+    private static final int COL_WEATHER_DATE = 2;
+    private static final int COL_WEATHER_DESC = 3;
+    private static final int COL_WEATHER_MAX_TEMP = 4;
+    private static final int COL_WEATHER_MIN_TEMP = 5;
+    private static final int COL_WEATHER_HUMIDITY = 6;
+    private static final int COL_WEATHER_WIND_SPEED = 7;
+    private static final int COL_WEATHER_PRESSURE = 8;
+    private static final int COL_WEATHER_DEGREES = 9;
+
+    // Until the loader is started, reloads the day from the provider once it changes
+    private final ContentObserver mChangeObserver = new ContentObserver(new Handler()) {
+        @Override
+        public void onChange(boolean selfChange) {
+            startLoader();
+        }
+    };
+    private boolean mObserving;
     
     private TextView friendlyDateView;
     private TextView dateView;
@@ -131,15 +154,64 @@ public class DetailFragment extends Fragment implements LoaderManager.LoaderCall
         }
 
         if (getArguments() != null && getArguments().containsKey(DetailActivity.DATE_KEY)) {
-            getLoaderManager().initLoader(DETAIL_LOADER, null, this);
+            // Show the day the list already read, if it did, and only query once it changes
+            if (savedInstanceState == null && showSnapshot()) {
+                getActivity().getContentResolver().registerContentObserver(
+                        WeatherContract.WeatherEntry.buildWeatherLocationWithDate(
+                                mLocation, mDateStr), false, mChangeObserver);
+                mObserving = true;
+            } else {
+                startLoader();
+            }
+        }
+    }
+
+    @Override
+    public void onDestroyView() {
+        stopObserving();
+        super.onDestroyView();
+    }
+
+    private void startLoader() {
+        stopObserving();
+        getLoaderManager().initLoader(DETAIL_LOADER, null, this);
+    }
+
+    private void stopObserving() {
+        if (mObserving) {
+            getActivity().getContentResolver().unregisterContentObserver(mChangeObserver);
+            mObserving = false;
         }
     }
 
+    /**
+     * Shows the day from the list's {@link ForecastSnapshot}.
+     *
+     * @return false if the snapshot doesn't have the day of the preferred location.
+     */
+    private boolean showSnapshot() {
+        ForecastSnapshot snapshot = ForecastSnapshot.getCurrent();
+        String location = Utility.getPreferredLocation(getActivity());
+        if (snapshot == null || !snapshot.getLocation().equals(location)) {
+            return false;
+        }
+
+        ForecastSnapshot.Day day = snapshot.getDay(WeatherContract.getDbDate(mDateStr));
+        if (day == null) {
+            return false;
+        }
+
+        mLocation = location;
+        showDay(day);
+        return true;
+    }
+
     @Override
     public void onResume() {
         super.onResume();
         if (mLocation != null &&
                 !mLocation.equals(Utility.getPreferredLocation(getActivity()))) {
+            stopObserving();
             getLoaderManager().restartLoader(DETAIL_LOADER, null, this);
         }
     }
@@ -154,7 +226,7 @@ public class DetailFragment extends Fragment implements LoaderManager.LoaderCall
     public Loader<Cursor> onCreateLoader(int id, Bundle args) {
 
         // Sort order:  Ascending, by date.
-        String sortOrder = WeatherContract.WeatherEntry.COLUMN_DATETEXT + " ASC";
+        String sortOrder = WeatherContract.WeatherEntry.COLUMN_DATE + " ASC";
 
         mLocation = Utility.getPreferredLocation(getActivity());
 
@@ -177,50 +249,53 @@ public class DetailFragment extends Fragment implements LoaderManager.LoaderCall
     @Override
     public void onLoadFinished(Loader<Cursor> loader, Cursor data) {
         Log.v(LOG_TAG, "In onLoadFinished");
+        NotificationStats.recordLoaderReload(((CursorLoader) loader).getUri());
         if (!data.moveToFirst()) { return; }
 
-        String unformattedDateStr = data.getString(data.getColumnIndex(WeatherContract.WeatherEntry.COLUMN_DATETEXT));
+        showDay(new ForecastSnapshot.Day(
+                data.getLong(COL_WEATHER_DATE),
+                data.getInt(COL_WEATHER_ID),
+                data.getString(COL_WEATHER_DESC),
+                data.getDouble(COL_WEATHER_MAX_TEMP),
+                data.getDouble(COL_WEATHER_MIN_TEMP),
+                data.getDouble(COL_WEATHER_HUMIDITY),
+                data.getFloat(COL_WEATHER_WIND_SPEED),
+                data.getFloat(COL_WEATHER_DEGREES),
+                data.getDouble(COL_WEATHER_PRESSURE)));
+    }
 
-        String dayName = Utility.getDayName(getActivity(), unformattedDateStr);
+    private void showDay(ForecastSnapshot.Day day) {
+        String dayName = Utility.getDayName(getActivity(), day.date);
         friendlyDateView.setText(dayName);
 
-        String dateString = Utility.getFormattedMonthDay(getActivity(), unformattedDateStr);
+        String dateString = Utility.getFormattedMonthDay(getActivity(), day.date);
         dateView.setText(dateString);
 
-        String weatherDescription =
-                data.getString(data.getColumnIndex(WeatherContract.WeatherEntry.COLUMN_SHORT_DESC));
-        descriptionView.setText(weatherDescription);
+        descriptionView.setText(day.description);
 
         boolean isMetric = Utility.isMetric(getActivity());
 
-        String high = Utility.formatTemperature(getActivity(),
-                data.getDouble(data.getColumnIndex(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP)), isMetric);
+        String high = Utility.formatTemperature(getActivity(), day.high, isMetric);
         highTempView.setText(high);
 
-        String low = Utility.formatTemperature(getActivity(),
-                data.getDouble(data.getColumnIndex(WeatherContract.WeatherEntry.COLUMN_MIN_TEMP)), isMetric);
+        String low = Utility.formatTemperature(getActivity(), day.low, isMetric);
         lowTempView.setText(low);
 
-        String humidity = getActivity().getString(
-                R.string.format_humidity, data.getDouble(data.getColumnIndex(WeatherContract.WeatherEntry.COLUMN_HUMIDITY)));
+        String humidity = getActivity().getString(R.string.format_humidity, day.humidity);
         humidityView.setText(humidity);
 
-        String windSpeed = Utility.getFormattedWind(getActivity(),
-                data.getFloat(data.getColumnIndex(WeatherContract.WeatherEntry.COLUMN_WIND_SPEED)),
-                data.getFloat(data.getColumnIndex(WeatherContract.WeatherEntry.COLUMN_DEGREES)));
+        String windSpeed = Utility.getFormattedWind(getActivity(), day.windSpeed, day.degrees);
         windView.setText(windSpeed);
 
-        String pressure = getActivity().getString(
-                R.string.format_pressure, data.getDouble(data.getColumnIndex(WeatherContract.WeatherEntry.COLUMN_PRESSURE)));
+        String pressure = getActivity().getString(R.string.format_pressure, day.pressure);
         pressureView.setText(pressure);
 
-        int weatherId = data.getInt(data.getColumnIndex(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID));
-        iconView.setImageResource(Utility.getArtResourceForWeatherCondition(weatherId));
+        iconView.setImageResource(Utility.getArtResourceForWeatherCondition(day.weatherId));
 
 
         // We still need this for the share intent
         mForecastStr = String.format("%s - %s - %s/%s",
-                dateString, weatherDescription, high, low);
+                dateString, day.description, high, low);
 
         Log.v(LOG_TAG, "Forecast String: " + mForecastStr);
     }
@@ -9,6 +9,9 @@ import android.view.ViewGroup;
 import android.widget.ImageView;
 import android.widget.TextView;
 
+import com.example.android.sunshine.data.DateCodec;
+
+
 /**
  * {@link ForecastAdapter} exposes a list of weather forecasts
  * from a {@link Cursor} to a {@link android.widget.ListView}.
@@ -20,12 +23,23 @@ public class ForecastAdapter extends CursorAdapter {
 
     private boolean mUseTodayLayout;
 
+    private final RelativeDayLabels mDayLabels;
+
     public void setUseTodayLayout(boolean mUseTodayLayout) {
         this.mUseTodayLayout = mUseTodayLayout;
     }
 
     public ForecastAdapter(Context context, Cursor c, int flags) {
         super(context, c, flags);
+        mDayLabels = new RelativeDayLabels(context);
+    }
+
+    /**
+     * Rebuilds the day labels, after the clock or time zone was changed.
+     */
+    public void invalidateDayLabels() {
+        mDayLabels.invalidate();
+        notifyDataSetChanged();
     }
 
     @Override
@@ -62,14 +76,29 @@ public class ForecastAdapter extends CursorAdapter {
 
     @Override
     public void bindView(View view, Context context, Cursor cursor) {
-
-        // Read weather icon ID from cursor
-        int weatherId = cursor.getInt(ForecastFragment.COL_WEATHER_ID);
+        StartupTrace.markFirstForecastBound();
 
         ViewHolder viewHolder = (ViewHolder) view.getTag();
+        int viewType = getItemViewType(cursor.getPosition());
 
+        // Read user preference for metric or imperial temperature units
+        boolean isMetric = Utility.isMetric(context);
 
-        int viewType = getItemViewType(cursor.getPosition());
+        // Use the row built by the loader, unless the units or day have changed since
+        ForecastRowCursor.Row row = cursor instanceof ForecastRowCursor ?
+                ((ForecastRowCursor) cursor).getRow(isMetric, DateCodec.today()) : null;
+        if (row != null) {
+            viewHolder.iconView.setImageResource(
+                    viewType == VIEW_TYPE_FUTURE_DAY ? row.iconResource : row.artResource);
+            viewHolder.dateView.setText(row.dateLabel);
+            viewHolder.descriptionView.setText(row.description);
+            viewHolder.highTempView.setText(row.high);
+            viewHolder.lowTempView.setText(row.low);
+            return;
+        }
+
+        // Read weather icon ID from cursor
+        int weatherId = cursor.getInt(ForecastFragment.COL_WEATHER_ID);
 
         final int weatherIcon;
         if (viewType == VIEW_TYPE_FUTURE_DAY) {
@@ -82,18 +111,15 @@ public class ForecastAdapter extends CursorAdapter {
 
 
         // Read date from cursor
-        String dateString = cursor.getString(ForecastFragment.COL_WEATHER_DATE);
+        long date = cursor.getLong(ForecastFragment.COL_WEATHER_DATE);
         // Find TextView and set formatted date on it
-        viewHolder.dateView.setText(Utility.getFriendlyDayString(context, dateString));
+        viewHolder.dateView.setText(mDayLabels.get(date));
 
         // Read weather forecast from cursor
         String description = cursor.getString(ForecastFragment.COL_WEATHER_DESC);
         // Find TextView and set weather forecast on it
         viewHolder.descriptionView.setText(description);
 
-        // Read user preference for metric or imperial temperature units
-        boolean isMetric = Utility.isMetric(context);
-
         // Read high temperature from cursor
         float high = cursor.getFloat(ForecastFragment.COL_WEATHER_MAX_TEMP);
         viewHolder.highTempView.setText(Utility.formatTemperature(context, high, isMetric));
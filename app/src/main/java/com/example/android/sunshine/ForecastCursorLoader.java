@@ -0,0 +1,33 @@
+package com.example.android.sunshine;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.support.v4.content.CursorLoader;
+
+/**
+ * A CursorLoader for the forecast list that also builds its {@link ForecastRowCursor.Row}s on
+ * the loader's thread, so the list's first render after a sync doesn't format on the main
+ * thread.
+ */
+public class ForecastCursorLoader extends CursorLoader {
+
+    public ForecastCursorLoader(Context context, Uri uri, String[] projection, String selection,
+                                String[] selectionArgs, String sortOrder) {
+        super(context, uri, projection, selection, selectionArgs, sortOrder);
+    }
+
+    @Override
+    public Cursor loadInBackground() {
+        Cursor cursor = super.loadInBackground();
+        if (cursor == null) {
+            return null;
+        }
+        try {
+            return new ForecastRowCursor(getContext(), cursor);
+        } catch (RuntimeException e) {
+            cursor.close();
+            throw e;
+        }
+    }
+}
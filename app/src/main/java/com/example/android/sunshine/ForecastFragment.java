@@ -1,14 +1,22 @@
 package com.example.android.sunshine;
 
+import android.content.BroadcastReceiver;
+import android.content.ContentValues;
+import android.content.Context;
 import android.content.Intent;
+import android.content.IntentFilter;
 import android.database.Cursor;
 import android.net.Uri;
+import android.os.AsyncTask;
 import android.os.Bundle;
 import android.support.v4.app.Fragment;
 import android.support.v4.app.LoaderManager;
 import android.support.v4.content.CursorLoader;
 import android.support.v4.content.Loader;
 import android.support.v4.widget.CursorAdapter;
+import android.support.v7.app.ActionBar;
+import android.support.v7.app.ActionBarActivity;
+import android.text.format.DateUtils;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.Menu;
@@ -19,10 +27,11 @@ import android.view.ViewGroup;
 import android.widget.AdapterView;
 import android.widget.ListView;
 
+import com.example.android.sunshine.data.DateCodec;
+import com.example.android.sunshine.data.NotificationStats;
 import com.example.android.sunshine.data.WeatherContract;
 import com.example.android.sunshine.sync.SunshineSyncAdapter;
 
-import java.util.Date;
 
 /**
  * A placeholder fragment containing a simple view.
@@ -32,12 +41,15 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
     private static final String LOG_TAG = ForecastFragment.class.getSimpleName();
     private static final String POSITION_KEY = "position";
 
+    // How old the location's view time may get before showing the list records it again
+    private static final long LAST_VIEWED_UPDATE_MILLIS = 6 * DateUtils.HOUR_IN_MILLIS;
+
     private String mLocation;
     private static final int FORECAST_LOADER = 0;
 
-    private final String[] FORECAST_COLUMNS = {
+    public static final String[] FORECAST_COLUMNS = {
             WeatherContract.WeatherEntry.TABLE_NAME + "." + WeatherContract.WeatherEntry._ID,
-            WeatherContract.WeatherEntry.COLUMN_DATETEXT,
+            WeatherContract.WeatherEntry.COLUMN_DATE,
             WeatherContract.WeatherEntry.COLUMN_SHORT_DESC,
             WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
             WeatherContract.WeatherEntry.COLUMN_MIN_TEMP,
@@ -45,7 +57,13 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
             WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING,
             WeatherContract.LocationEntry.COLUMN_COORD_LAT,
             WeatherContract.LocationEntry.COLUMN_COORD_LONG,
-
+            // For the snapshot the detail view shows
+            WeatherContract.WeatherEntry.COLUMN_HUMIDITY,
+            WeatherContract.WeatherEntry.COLUMN_WIND_SPEED,
+            WeatherContract.WeatherEntry.COLUMN_DEGREES,
+            WeatherContract.WeatherEntry.COLUMN_PRESSURE,
+            // For the age of the forecast, shown in the action bar
+            WeatherContract.LocationEntry.COLUMN_LAST_FETCHED,
     };
 
     public static final int COL_WEATHER_TABLE_ID = 0;
@@ -57,6 +75,11 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
     public static final int COL_LOCATION_SETTING = 6;
     public static final int COL_COORD_LAT = 7;
     public static final int COL_COORD_LONG = 8;
+    public static final int COL_WEATHER_HUMIDITY = 9;
+    public static final int COL_WEATHER_WIND_SPEED = 10;
+    public static final int COL_WEATHER_DEGREES = 11;
+    public static final int COL_WEATHER_PRESSURE = 12;
+    public static final int COL_LAST_FETCHED = 13;
 
     private ForecastAdapter mForecastAdapter;
     private boolean mUseTodayLayout;
@@ -65,6 +88,19 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
     private int mPosition = -1;
     private ListView mListView;
 
+    // When the forecast shown was last fetched, or 0 while there is none
+    private long mLastFetched;
+
+    // Rebuilds the day labels and the start of the forecast when the day changes under the list
+    private final BroadcastReceiver mTimeChangeReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            DateCodec.onTimeZoneChanged();
+            mForecastAdapter.invalidateDayLabels();
+            getLoaderManager().restartLoader(FORECAST_LOADER, null, ForecastFragment.this);
+        }
+    };
+
     public void setUseTodayLayout(boolean useTodayLayout) {
         mUseTodayLayout = useTodayLayout;
         if (mForecastAdapter != null) {
@@ -128,11 +164,22 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
     @Override
     public void onResume() {
         super.onResume();
+        IntentFilter timeChanges = new IntentFilter(Intent.ACTION_DATE_CHANGED);
+        timeChanges.addAction(Intent.ACTION_TIME_CHANGED);
+        timeChanges.addAction(Intent.ACTION_TIMEZONE_CHANGED);
+        getActivity().registerReceiver(mTimeChangeReceiver, timeChanges);
+        showForecastAge();
         if (mLocation != null && !Utility.getPreferredLocation(getActivity()).equals(mLocation)) {
             getLoaderManager().restartLoader(FORECAST_LOADER, null, this);
         }
     }
 
+    @Override
+    public void onPause() {
+        getActivity().unregisterReceiver(mTimeChangeReceiver);
+        super.onPause();
+    }
+
     @Override
     public void onActivityCreated(Bundle savedInstanceState) {
         getLoaderManager().initLoader(FORECAST_LOADER, null, this);
@@ -140,7 +187,8 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
     }
 
     private void updateWeather() {
-        SunshineSyncAdapter.syncImmediately(getActivity());
+        // The cached forecast shows meanwhile; rotations don't sync again while it's fresh
+        SunshineSyncAdapter.syncIfStale(getActivity());
     }
 
     @Override
@@ -189,8 +237,8 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
 
                 if (null != cursor && cursor.moveToPosition(position)) {
 
-                    ((Callback) getActivity())
-                            .onItemSelected(cursor.getString(COL_WEATHER_DATE));
+                    ((Callback) getActivity()).onItemSelected(
+                            WeatherContract.getDateString(cursor.getLong(COL_WEATHER_DATE)));
 
                 } else {
                     throw new UnsupportedOperationException("Could not move the cursor to position " + position);
@@ -216,18 +264,19 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
         // To only show current and future dates, get the String representation for today,
         // and filter the query to return weather only for dates after or including today.
         // Only return data after today.
-        String startDate = WeatherContract.getDbDateString(new Date());
+        String startDate = WeatherContract.getDateString(DateCodec.today());
 
         // Sort order:  Ascending, by date.
-        String sortOrder = WeatherContract.WeatherEntry.COLUMN_DATETEXT + " ASC";
+        String sortOrder = WeatherContract.WeatherEntry.COLUMN_DATE + " ASC";
 
         mLocation = Utility.getPreferredLocation(getActivity());
+        markLocationViewed(getActivity().getApplicationContext(), mLocation);
         Uri weatherForLocationUri = WeatherContract.WeatherEntry.buildWeatherLocationWithStartDate(
                 mLocation, startDate);
 
         // Now create and return a CursorLoader that will take care of
         // creating a Cursor for the data being displayed.
-        return new CursorLoader(
+        return new ForecastCursorLoader(
                 getActivity(),
                 weatherForLocationUri,
                 FORECAST_COLUMNS,
@@ -237,12 +286,42 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
         );
     }
 
+    /**
+     * Records that the location's forecast was shown, so the sync adapter's retention keeps it.
+     * Retention counts in days, so a view time that's a few hours old is left as it is rather
+     * than written every time the list is created.
+     */
+    private static void markLocationViewed(final Context context, final String location) {
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                long now = System.currentTimeMillis();
+                ContentValues values = new ContentValues();
+                values.put(WeatherContract.LocationEntry.COLUMN_LAST_VIEWED, now);
+                context.getContentResolver().update(WeatherContract.LocationEntry.CONTENT_URI,
+                        values,
+                        WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING + " = ? AND " +
+                                WeatherContract.LocationEntry.COLUMN_LAST_VIEWED + " < ?",
+                        new String[] { location,
+                                Long.toString(now - LAST_VIEWED_UPDATE_MILLIS) });
+            }
+        });
+    }
+
     @Override
     public void onLoadFinished(Loader<Cursor> loader, Cursor data) {
 
         Log.v(LOG_TAG, "onLoadFinished called");
+        NotificationStats.recordLoaderReload(((CursorLoader) loader).getUri());
 
         mForecastAdapter.swapCursor(data);
+        if (data instanceof ForecastRowCursor) {
+            ForecastSnapshot.publish(((ForecastRowCursor) data).getSnapshot());
+        }
+
+        // Every row has the same location, and so the same age
+        mLastFetched = data != null && data.moveToFirst() ? data.getLong(COL_LAST_FETCHED) : 0;
+        showForecastAge();
 
         if (mPosition > 0) {
             mListView.setSelection(mPosition);
@@ -259,6 +338,20 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
         mForecastAdapter.swapCursor(null);
     }
 
+    /**
+     * Shows how old the forecast is under the title, so stale data is shown right away but
+     * never passed off as current.
+     */
+    private void showForecastAge() {
+        ActionBar actionBar = ((ActionBarActivity) getActivity()).getSupportActionBar();
+        if (actionBar == null) {
+            return;
+        }
+        actionBar.setSubtitle(mLastFetched > 0
+                ? Utility.getUpdatedAgo(getActivity(), mLastFetched, System.currentTimeMillis())
+                : null);
+    }
+
     public void openPreferredLocationInMap() {
 
 
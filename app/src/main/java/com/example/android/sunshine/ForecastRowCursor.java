@@ -0,0 +1,98 @@
+package com.example.android.sunshine;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.CursorWrapper;
+
+import com.example.android.sunshine.data.DateCodec;
+
+import java.util.Locale;
+
+/**
+ * A forecast cursor that carries, for each of its rows, everything ForecastAdapter shows: the
+ * strings and resource ids are built once on the loader's thread, so binding a row only assigns
+ * them.  It also carries the {@link ForecastSnapshot} of its days for the detail view.
+ * <p/>
+ * The rows hold the day labels and temperatures for the units, day and locale current when they
+ * were built.  Once any of those has changed, {@link #getRow} returns null and the adapter
+ * formats the row itself until the loader delivers new rows.
+ */
+public class ForecastRowCursor extends CursorWrapper {
+
+    /**
+     * One row of the forecast list, ready to render.
+     */
+    public static class Row {
+        public final int iconResource;
+        public final int artResource;
+        public final String dateLabel;
+        public final String description;
+        public final String high;
+        public final String low;
+
+        Row(int iconResource, int artResource, String dateLabel, String description,
+            String high, String low) {
+            this.iconResource = iconResource;
+            this.artResource = artResource;
+            this.dateLabel = dateLabel;
+            this.description = description;
+            this.high = high;
+            this.low = low;
+        }
+    }
+
+    private final Row[] mRows;
+    private final ForecastSnapshot mSnapshot;
+    private final boolean mMetric;
+    private final long mToday;
+    private final Locale mLocale;
+
+    /**
+     * Reads the whole cursor, which must have the columns of ForecastFragment's projection.
+     * Call on a background thread.
+     */
+    public ForecastRowCursor(Context context, Cursor cursor) {
+        super(cursor);
+        mMetric = Utility.isMetric(context);
+        mToday = DateCodec.today();
+        mLocale = Locale.getDefault();
+
+        mRows = new Row[cursor.getCount()];
+        cursor.moveToPosition(-1);
+        while (cursor.moveToNext()) {
+            WeatherConditions.Condition condition =
+                    WeatherConditions.get(cursor.getInt(ForecastFragment.COL_WEATHER_ID));
+            mRows[cursor.getPosition()] = new Row(
+                    condition.iconResource,
+                    condition.artResource,
+                    Utility.getFriendlyDayString(context,
+                            cursor.getLong(ForecastFragment.COL_WEATHER_DATE)),
+                    cursor.getString(ForecastFragment.COL_WEATHER_DESC),
+                    Utility.formatTemperature(context,
+                            cursor.getFloat(ForecastFragment.COL_WEATHER_MAX_TEMP), mMetric),
+                    Utility.formatTemperature(context,
+                            cursor.getFloat(ForecastFragment.COL_WEATHER_MIN_TEMP), mMetric));
+        }
+        mSnapshot = ForecastSnapshot.fromCursor(cursor);
+        cursor.moveToPosition(-1);
+    }
+
+    /**
+     * @return the days of this cursor, for {@link ForecastSnapshot#publish}, or null if it's
+     * empty.
+     */
+    public ForecastSnapshot getSnapshot() {
+        return mSnapshot;
+    }
+
+    /**
+     * @return the row at the cursor's position, or null if it was built for other units, another
+     * day or another locale.
+     */
+    public Row getRow(boolean metric, long today) {
+        if (metric != mMetric || today != mToday || Locale.getDefault() != mLocale) {
+            return null;
+        }
+        return mRows[getPosition()];
+    }
+}
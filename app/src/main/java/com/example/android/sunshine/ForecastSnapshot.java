@@ -0,0 +1,111 @@
+package com.example.android.sunshine;
+
+import android.database.Cursor;
+
+/**
+ * The forecast the list last loaded, kept in memory so DetailFragment can show a day as soon as
+ * it's created instead of querying the provider for a row the list already read.
+ * <p/>
+ * Snapshots are immutable.  ForecastFragment publishes a new one each time its loader delivers,
+ * which happens whenever the forecast it shows changes while it's started.
+ */
+public class ForecastSnapshot {
+
+    /**
+     * The weather of one day, as stored.
+     */
+    public static class Day {
+        public final long date;
+        public final int weatherId;
+        public final String description;
+        public final double high;
+        public final double low;
+        public final double humidity;
+        public final float windSpeed;
+        public final float degrees;
+        public final double pressure;
+
+        public Day(long date, int weatherId, String description, double high, double low,
+                   double humidity, float windSpeed, float degrees, double pressure) {
+            this.date = date;
+            this.weatherId = weatherId;
+            this.description = description;
+            this.high = high;
+            this.low = low;
+            this.humidity = humidity;
+            this.windSpeed = windSpeed;
+            this.degrees = degrees;
+            this.pressure = pressure;
+        }
+    }
+
+    private static volatile ForecastSnapshot sCurrent;
+
+    private final String mLocation;
+    private final Day[] mDays;
+
+    ForecastSnapshot(String location, Day[] days) {
+        mLocation = location;
+        mDays = days;
+    }
+
+    /**
+     * Reads a cursor with the columns of ForecastFragment's projection, sorted by date.
+     *
+     * @return the snapshot, or null if the cursor is empty
+     */
+    static ForecastSnapshot fromCursor(Cursor cursor) {
+        if (!cursor.moveToFirst()) {
+            return null;
+        }
+
+        String location = cursor.getString(ForecastFragment.COL_LOCATION_SETTING);
+        Day[] days = new Day[cursor.getCount()];
+        do {
+            days[cursor.getPosition()] = new Day(
+                    cursor.getLong(ForecastFragment.COL_WEATHER_DATE),
+                    cursor.getInt(ForecastFragment.COL_WEATHER_ID),
+                    cursor.getString(ForecastFragment.COL_WEATHER_DESC),
+                    cursor.getDouble(ForecastFragment.COL_WEATHER_MAX_TEMP),
+                    cursor.getDouble(ForecastFragment.COL_WEATHER_MIN_TEMP),
+                    cursor.getDouble(ForecastFragment.COL_WEATHER_HUMIDITY),
+                    cursor.getFloat(ForecastFragment.COL_WEATHER_WIND_SPEED),
+                    cursor.getFloat(ForecastFragment.COL_WEATHER_DEGREES),
+                    cursor.getDouble(ForecastFragment.COL_WEATHER_PRESSURE));
+        } while (cursor.moveToNext());
+        return new ForecastSnapshot(location, days);
+    }
+
+    public String getLocation() {
+        return mLocation;
+    }
+
+    /**
+     * @param date a value of the date column
+     * @return the day, or null if it isn't in the snapshot.
+     */
+    public Day getDay(long date) {
+        // The days are usually consecutive, so try the offset from the first one
+        int index = (int) (date - mDays[0].date);
+        if (index >= 0 && index < mDays.length && mDays[index].date == date) {
+            return mDays[index];
+        }
+        for (Day day : mDays) {
+            if (day.date == date) {
+                return day;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the last published snapshot, or null if there is none.
+     */
+    public static ForecastSnapshot getCurrent() {
+        return sCurrent;
+    }
+
+    public static void publish(ForecastSnapshot snapshot) {
+        sCurrent = snapshot;
+    }
+}
@@ -9,6 +9,8 @@ import android.support.v7.app.ActionBarActivity;
 import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
+import android.view.View;
+import android.view.ViewTreeObserver;
 
 import com.example.android.sunshine.sync.SunshineSyncAdapter;
 
@@ -48,6 +50,17 @@ public class MainActivity extends ActionBarActivity implements ForecastFragment.
         // Make sure we've gotten an account created and we're
         SunshineSyncAdapter.initializeSyncAdapter(this);
 
+        final View decorView = getWindow().getDecorView();
+        decorView.getViewTreeObserver().addOnPreDrawListener(
+                new ViewTreeObserver.OnPreDrawListener() {
+                    @Override
+                    public boolean onPreDraw() {
+                        decorView.getViewTreeObserver().removeOnPreDrawListener(this);
+                        StartupTrace.markFirstFrame();
+                        return true;
+                    }
+                });
+
         Log.v(LOG_TAG, "onCreate");
     }
 
@@ -0,0 +1,72 @@
+package com.example.android.sunshine;
+
+import android.content.Context;
+
+import com.example.android.sunshine.data.DateCodec;
+
+import java.util.Locale;
+
+/**
+ * The friendly day labels of the forecast list ("Today, June 8", "Tomorrow", "Wednesday",
+ * "Mon Jun 16"), built once for the days from today through the end of the forecast rather than
+ * for every row bound.  The labels are rebuilt when the day rolls over or the locale changes,
+ * which is checked with a clock read and a reference comparison per lookup.
+ * <p/>
+ * Only use an instance from the main thread.
+ */
+public class RelativeDayLabels {
+
+    // Two weeks of forecast, with room for a day of clock skew on either end
+    static final int WINDOW_DAYS = 16;
+
+    private final Context mContext;
+    private final String[] mLabels = new String[WINDOW_DAYS];
+
+    private long mToday = Long.MIN_VALUE;
+    private Locale mLocale;
+
+    public RelativeDayLabels(Context context) {
+        mContext = context.getApplicationContext();
+    }
+
+    /**
+     * @param dbDate a value of the date column
+     * @return the label for the day, as {@link Utility#getFriendlyDayString(Context, long)}
+     */
+    public String get(long dbDate) {
+        refreshIfStale();
+
+        long index = dbDate - (mToday - 1);
+        if (index < 0 || index >= WINDOW_DAYS) {
+            return Utility.getFriendlyDayString(mContext, dbDate);
+        }
+
+        String label = mLabels[(int) index];
+        if (label == null) {
+            label = Utility.getFriendlyDayString(mContext, dbDate);
+            mLabels[(int) index] = label;
+        }
+        return label;
+    }
+
+    /**
+     * Drops the labels, so they're rebuilt on the next lookup.  The day and locale are already
+     * checked on every lookup, this is for the time zone or the resources changing.
+     */
+    public void invalidate() {
+        mToday = Long.MIN_VALUE;
+    }
+
+    private void refreshIfStale() {
+        long today = DateCodec.today();
+        // Locale.getDefault() returns the same instance until the locale changes
+        Locale locale = Locale.getDefault();
+        if (today != mToday || locale != mLocale) {
+            mToday = today;
+            mLocale = locale;
+            for (int i = 0; i < WINDOW_DAYS; i++) {
+                mLabels[i] = null;
+            }
+        }
+    }
+}
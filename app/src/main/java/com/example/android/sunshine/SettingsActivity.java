@@ -1,6 +1,7 @@
 package com.example.android.sunshine;
 
 import android.content.Context;
+import android.net.Uri;
 import android.os.Bundle;
 import android.preference.ListPreference;
 import android.preference.Preference;
@@ -60,10 +61,14 @@ public class SettingsActivity extends PreferenceActivity
 
         if (!mBindingPreference) {
             if (preference.getKey().equals(getString(R.string.pref_location_key))) {
-                SunshineSyncAdapter.syncImmediately(this);
+                // Not saved until this returns, so pass the new location along
+                SunshineSyncAdapter.syncImmediately(this, stringValue);
             } else {
-                // notify code that weather may be impacted
-                getContentResolver().notifyChange(WeatherContract.WeatherEntry.CONTENT_URI, null);
+                // notify code that weather may be impacted; only the preferred location is shown
+                Uri weatherUri = WeatherContract.WeatherEntry.buildWeatherLocation(
+                        Utility.getPreferredLocation(this));
+                getContentResolver().call(WeatherContract.BASE_CONTENT_URI,
+                        WeatherContract.METHOD_NOTIFY_DISPLAY_CHANGE, weatherUri.toString(), null);
             }
         }
 
@@ -0,0 +1,88 @@
+package com.example.android.sunshine;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+
+/**
+ * An immutable copy of the settings read while binding views: the preferred location and the
+ * units.  The current snapshot is swapped whenever one of them is written, so reading it costs a
+ * volatile read rather than a preference lookup and the resource reads for its key and default.
+ * <p/>
+ * SharedPreferences calls the listener on the main thread, right after an edit is committed or
+ * applied there, as SettingsActivity's are; an edit made on another thread shows up here once
+ * the main thread gets to it.
+ */
+public final class SettingsSnapshot {
+
+    private static volatile SettingsSnapshot sCurrent;
+
+    // SharedPreferences only keeps a weak reference to its listeners
+    private static Listener sListener;
+
+    private final String mLocation;
+    private final boolean mMetric;
+
+    private SettingsSnapshot(String location, boolean metric) {
+        mLocation = location;
+        mMetric = metric;
+    }
+
+    public String getLocation() {
+        return mLocation;
+    }
+
+    public boolean isMetric() {
+        return mMetric;
+    }
+
+    public static SettingsSnapshot get(Context context) {
+        SettingsSnapshot snapshot = sCurrent;
+        if (snapshot == null) {
+            snapshot = init(context);
+        }
+        return snapshot;
+    }
+
+    private static synchronized SettingsSnapshot init(Context context) {
+        if (sCurrent == null) {
+            SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
+            sListener = new Listener(context.getApplicationContext());
+            // Register before reading, so an edit in between isn't missed
+            prefs.registerOnSharedPreferenceChangeListener(sListener);
+            sCurrent = sListener.read(prefs);
+        }
+        return sCurrent;
+    }
+
+    private static class Listener implements SharedPreferences.OnSharedPreferenceChangeListener {
+        private final String mLocationKey;
+        private final String mLocationDefault;
+        private final String mUnitsKey;
+        private final String mUnitsMetric;
+
+        Listener(Context context) {
+            mLocationKey = context.getString(R.string.pref_location_key);
+            mLocationDefault = context.getString(R.string.pref_location_default);
+            mUnitsKey = context.getString(R.string.pref_units_key);
+            mUnitsMetric = context.getString(R.string.pref_units_metric);
+        }
+
+        SettingsSnapshot read(SharedPreferences prefs) {
+            return new SettingsSnapshot(
+                    prefs.getString(mLocationKey, mLocationDefault),
+                    prefs.getString(mUnitsKey, mUnitsMetric).equals(mUnitsMetric));
+        }
+
+        @Override
+        public void onSharedPreferenceChanged(SharedPreferences prefs, String key) {
+            // A null key means the preferences were cleared
+            if (key == null || mLocationKey.equals(key) || mUnitsKey.equals(key)) {
+                // Under init's lock, so its read can't overwrite this newer one
+                synchronized (SettingsSnapshot.class) {
+                    sCurrent = read(prefs);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.android.sunshine;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * Times of the milestones of a cold start, on the {@link SystemClock#elapsedRealtime} clock:
+ * the process starting, the first frame and the first forecast row being bound.  Each one is
+ * kept the first time it's marked, so marking it again on later activities is cheap and
+ * harmless.  The whole trace is logged once the first forecast is bound.
+ */
+public final class StartupTrace {
+
+    private static final String LOG_TAG = StartupTrace.class.getSimpleName();
+
+    /** Not marked yet. */
+    public static final long UNSET = -1;
+
+    private static volatile long sProcessStart = UNSET;
+    private static volatile long sFirstFrame = UNSET;
+    private static volatile long sFirstForecastBound = UNSET;
+
+    private StartupTrace() {
+    }
+
+    public static void markProcessStart() {
+        if (sProcessStart == UNSET) {
+            sProcessStart = SystemClock.elapsedRealtime();
+        }
+    }
+
+    public static void markFirstFrame() {
+        if (sFirstFrame == UNSET) {
+            sFirstFrame = SystemClock.elapsedRealtime();
+        }
+    }
+
+    public static void markFirstForecastBound() {
+        if (sFirstForecastBound == UNSET) {
+            sFirstForecastBound = SystemClock.elapsedRealtime();
+            Log.i(LOG_TAG, "First frame after " + getFirstFrameMillis() +
+                    " ms, first forecast bound after " + getFirstForecastBoundMillis() + " ms");
+        }
+    }
+
+    /**
+     * @return the milliseconds from process start to the first frame, or {@link #UNSET}.
+     */
+    public static long getFirstFrameMillis() {
+        return since(sFirstFrame);
+    }
+
+    /**
+     * @return the milliseconds from process start to the first forecast row being bound, or
+     * {@link #UNSET}.
+     */
+    public static long getFirstForecastBoundMillis() {
+        return since(sFirstForecastBound);
+    }
+
+    /**
+     * Forgets every milestone, for tests.
+     */
+    public static void reset() {
+        sProcessStart = UNSET;
+        sFirstFrame = UNSET;
+        sFirstForecastBound = UNSET;
+    }
+
+    private static long since(long mark) {
+        long start = sProcessStart;
+        return start == UNSET || mark == UNSET ? UNSET : mark - start;
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.android.sunshine;
+
+import android.app.Application;
+
+/**
+ * Marks the start of the process for {@link StartupTrace}, as early as app code runs.
+ */
+public class SunshineApplication extends Application {
+
+    @Override
+    public void onCreate() {
+        StartupTrace.markProcessStart();
+        super.onCreate();
+    }
+}
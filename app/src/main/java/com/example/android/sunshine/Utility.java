@@ -16,32 +16,21 @@
 package com.example.android.sunshine;
 
 import android.content.Context;
-import android.content.SharedPreferences;
-import android.preference.PreferenceManager;
+import android.text.format.DateUtils;
 
+import com.example.android.sunshine.data.DateCodec;
 import com.example.android.sunshine.data.WeatherContract;
 
-import java.text.DateFormat;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Calendar;
-import java.util.Date;
-
 public class Utility {
 
     private static final String DATE_FORMAT = WeatherContract.DATE_FORMAT;
 
     public static String getPreferredLocation(Context context) {
-        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
-        return prefs.getString(context.getString(R.string.pref_location_key),
-                context.getString(R.string.pref_location_default));
+        return SettingsSnapshot.get(context).getLocation();
     }
 
     public static boolean isMetric(Context context) {
-        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
-        return prefs.getString(context.getString(R.string.pref_units_key),
-                context.getString(R.string.pref_units_metric))
-                .equals(context.getString(R.string.pref_units_metric));
+        return SettingsSnapshot.get(context).isMetric();
     }
 
     public static String formatTemperature(Context context, double temperature, boolean isMetric) {
@@ -57,8 +46,7 @@ public class Utility {
     }
 
     public static String formatDate(String dateString) {
-        Date date = WeatherContract.getDateFromDb(dateString);
-        return DateFormat.getDateInstance().format(date);
+        return DateCodec.formatMediumDate(WeatherContract.getDbDate(dateString));
     }
 
     /**
@@ -71,39 +59,34 @@ public class Utility {
      * @return a user-friendly representation of the date.
      */
     public static String getFriendlyDayString(Context context, String dateStr) {
+        return getFriendlyDayString(context, WeatherContract.getDbDate(dateStr));
+    }
+
+    /**
+     * Like {@link #getFriendlyDayString(Context, String)}, for a value of the date column.
+     */
+    public static String getFriendlyDayString(Context context, long dbDate) {
         // The day string for forecast uses the following logic:
         // For today: "Today, June 8"
         // For tomorrow:  "Tomorrow"
         // For the next 5 days: "Wednesday" (just the day name)
         // For all days after that: "Mon Jun 8"
 
-        Date todayDate = new Date();
-        String todayStr = WeatherContract.getDbDateString(todayDate);
-        Date inputDate = WeatherContract.getDateFromDb(dateStr);
+        long today = DateCodec.today();
 
         // If the date we're building the String for is today's date, the format
         // is "Today, June 24"
-        if (todayStr.equals(dateStr)) {
-            String today = context.getString(R.string.today);
-            int formatId = R.string.format_full_friendly_date;
-            return String.format(context.getString(
-                    formatId,
-                    today,
-                    getFormattedMonthDay(context, dateStr)));
+        if (dbDate == today) {
+            return context.getString(
+                    R.string.format_full_friendly_date,
+                    context.getString(R.string.today),
+                    DateCodec.formatMonthDay(dbDate));
+        } else if (dbDate < today + 7) {
+            // If the input date is less than a week in the future, just return the day name.
+            return getDayName(context, dbDate, today);
         } else {
-            Calendar cal = Calendar.getInstance();
-            cal.setTime(todayDate);
-            cal.add(Calendar.DATE, 7);
-            String weekFutureString = WeatherContract.getDbDateString(cal.getTime());
-
-            if (dateStr.compareTo(weekFutureString) < 0) {
-                // If the input date is less than a week in the future, just return the day name.
-                return getDayName(context, dateStr);
-            } else {
-                // Otherwise, use the form "Mon Jun 3"
-                SimpleDateFormat shortenedDateFormat = new SimpleDateFormat("EEE MMM dd");
-                return shortenedDateFormat.format(inputDate);
-            }
+            // Otherwise, use the form "Mon Jun 3"
+            return DateCodec.formatShortDate(dbDate);
         }
     }
 
@@ -117,36 +100,36 @@ public class Utility {
      * @return
      */
     public static String getDayName(Context context, String dateStr) {
-        SimpleDateFormat dbDateFormat = new SimpleDateFormat(Utility.DATE_FORMAT);
         try {
-            Date inputDate = dbDateFormat.parse(dateStr);
-            Date todayDate = new Date();
-            // If the date is today, return the localized version of "Today" instead of the actual
-            // day name.
-            if (WeatherContract.getDbDateString(todayDate).equals(dateStr)) {
-                return context.getString(R.string.today);
-            } else {
-                // If the date is set for tomorrow, the format is "Tomorrow".
-                Calendar cal = Calendar.getInstance();
-                cal.setTime(todayDate);
-                cal.add(Calendar.DATE, 1);
-                Date tomorrowDate = cal.getTime();
-                if (WeatherContract.getDbDateString(tomorrowDate).equals(
-                        dateStr)) {
-                    return context.getString(R.string.tomorrow);
-                } else {
-                    // Otherwise, the format is just the day of the week (e.g "Wednesday".
-                    SimpleDateFormat dayFormat = new SimpleDateFormat("EEEE");
-                    return dayFormat.format(inputDate);
-                }
-            }
-        } catch (ParseException e) {
+            return getDayName(context, WeatherContract.getDbDate(dateStr));
+        } catch (NumberFormatException e) {
             e.printStackTrace();
             // It couldn't process the date correctly.
             return "";
         }
     }
 
+    /**
+     * Like {@link #getDayName(Context, String)}, for a value of the date column.
+     */
+    public static String getDayName(Context context, long dbDate) {
+        return getDayName(context, dbDate, DateCodec.today());
+    }
+
+    private static String getDayName(Context context, long dbDate, long today) {
+        // If the date is today, return the localized version of "Today" instead of the actual
+        // day name.
+        if (dbDate == today) {
+            return context.getString(R.string.today);
+        } else if (dbDate == today + 1) {
+            // If the date is set for tomorrow, the format is "Tomorrow".
+            return context.getString(R.string.tomorrow);
+        } else {
+            // Otherwise, the format is just the day of the week (e.g "Wednesday".
+            return DateCodec.formatDayName(dbDate);
+        }
+    }
+
     /**
      * Converts db date format to the format "Month day", e.g "June 24".
      * @param context Context to use for resource localization
@@ -155,21 +138,39 @@ public class Utility {
      * @return The day in the form of a string formatted "December 6"
      */
     public static String getFormattedMonthDay(Context context, String dateStr) {
-        SimpleDateFormat dbDateFormat = new SimpleDateFormat(Utility.DATE_FORMAT);
         try {
-            Date inputDate = dbDateFormat.parse(dateStr);
-            SimpleDateFormat monthDayFormat = new SimpleDateFormat("MMMM dd");
-            String monthDayString = monthDayFormat.format(inputDate);
-            return monthDayString;
-        } catch (ParseException e) {
+            return getFormattedMonthDay(context, WeatherContract.getDbDate(dateStr));
+        } catch (NumberFormatException e) {
             e.printStackTrace();
             return null;
         }
     }
 
+    /**
+     * Like {@link #getFormattedMonthDay(Context, String)}, for a value of the date column.
+     */
+    public static String getFormattedMonthDay(Context context, long dbDate) {
+        return DateCodec.formatMonthDay(dbDate);
+    }
+
+    /**
+     * Helper method to describe how old the forecast shown is, i.e "Updated 5 minutes ago".
+     * @param context Context to use for resource localization
+     * @param lastFetched When the forecast was last fetched, in milliseconds since the epoch
+     * @param now The current time, in milliseconds since the epoch
+     * @return the age of the forecast, in words
+     */
+    public static String getUpdatedAgo(Context context, long lastFetched, long now) {
+        if (now - lastFetched < DateUtils.MINUTE_IN_MILLIS) {
+            return context.getString(R.string.updated_just_now);
+        }
+        return context.getString(R.string.format_updated_ago,
+                DateUtils.getRelativeTimeSpanString(lastFetched, now, DateUtils.MINUTE_IN_MILLIS));
+    }
+
     public static String getFormattedWind(Context context, float windSpeed, float degrees) {
         int windFormat;
-        if (SettingsActivity.isMetric(context)) {
+        if (isMetric(context)) {
             windFormat = R.string.format_wind_kmh;
         } else {
             windFormat = R.string.format_wind_mph;
@@ -207,32 +208,7 @@ public class Utility {
      * @return resource id for the corresponding icon. -1 if no relation is found.
      */
     public static int getIconResourceForWeatherCondition(int weatherId) {
-        // Based on weather code data found at:
-        // http://bugs.openweathermap.org/projects/api/wiki/Weather_Condition_Codes
-        if (weatherId >= 200 && weatherId <= 232) {
-            return R.drawable.ic_storm;
-        } else if (weatherId >= 300 && weatherId <= 321) {
-            return R.drawable.ic_light_rain;
-        } else if (weatherId >= 500 && weatherId <= 504) {
-            return R.drawable.ic_rain;
-        } else if (weatherId == 511) {
-            return R.drawable.ic_snow;
-        } else if (weatherId >= 520 && weatherId <= 531) {
-            return R.drawable.ic_rain;
-        } else if (weatherId >= 600 && weatherId <= 622) {
-            return R.drawable.ic_snow;
-        } else if (weatherId >= 701 && weatherId <= 761) {
-            return R.drawable.ic_fog;
-        } else if (weatherId == 761 || weatherId == 781) {
-            return R.drawable.ic_storm;
-        } else if (weatherId == 800) {
-            return R.drawable.ic_clear;
-        } else if (weatherId == 801) {
-            return R.drawable.ic_light_clouds;
-        } else if (weatherId >= 802 && weatherId <= 804) {
-            return R.drawable.ic_cloudy;
-        }
-        return -1;
+        return WeatherConditions.get(weatherId).iconResource;
     }
 
     /**
@@ -242,31 +218,6 @@ public class Utility {
      * @return resource id for the corresponding image. -1 if no relation is found.
      */
     public static int getArtResourceForWeatherCondition(int weatherId) {
-        // Based on weather code data found at:
-        // http://bugs.openweathermap.org/projects/api/wiki/Weather_Condition_Codes
-        if (weatherId >= 200 && weatherId <= 232) {
-            return R.drawable.art_storm;
-        } else if (weatherId >= 300 && weatherId <= 321) {
-            return R.drawable.art_light_rain;
-        } else if (weatherId >= 500 && weatherId <= 504) {
-            return R.drawable.art_rain;
-        } else if (weatherId == 511) {
-            return R.drawable.art_snow;
-        } else if (weatherId >= 520 && weatherId <= 531) {
-            return R.drawable.art_rain;
-        } else if (weatherId >= 600 && weatherId <= 622) {
-            return R.drawable.art_rain;
-        } else if (weatherId >= 701 && weatherId <= 761) {
-            return R.drawable.art_fog;
-        } else if (weatherId == 761 || weatherId == 781) {
-            return R.drawable.art_storm;
-        } else if (weatherId == 800) {
-            return R.drawable.art_clear;
-        } else if (weatherId == 801) {
-            return R.drawable.art_light_clouds;
-        } else if (weatherId >= 802 && weatherId <= 804) {
-            return R.drawable.art_clouds;
-        }
-        return -1;
+        return WeatherConditions.get(weatherId).artResource;
     }
 }
@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine;
+
+/**
+ * What the app knows about each OpenWeatherMap condition code: its icon, its art, the category
+ * of weather it describes and how severe it is, all found with one array lookup.
+ * <p/>
+ * Based on the weather code data found at:
+ * http://bugs.openweathermap.org/projects/api/wiki/Weather_Condition_Codes
+ */
+public final class WeatherConditions {
+
+    public static final int CATEGORY_UNKNOWN = 0;
+    public static final int CATEGORY_STORM = 1;
+    public static final int CATEGORY_DRIZZLE = 2;
+    public static final int CATEGORY_RAIN = 3;
+    public static final int CATEGORY_SNOW = 4;
+    public static final int CATEGORY_ATMOSPHERE = 5;
+    public static final int CATEGORY_CLEAR = 6;
+    public static final int CATEGORY_LIGHT_CLOUDS = 7;
+    public static final int CATEGORY_CLOUDS = 8;
+
+    public static final int SEVERITY_NONE = 0;
+    public static final int SEVERITY_LIGHT = 1;
+    public static final int SEVERITY_MODERATE = 2;
+    public static final int SEVERITY_SEVERE = 3;
+
+    public static class Condition {
+        /** The icon resource id, or -1 if the code isn't known. */
+        public final int iconResource;
+        /** The art resource id, or -1 if the code isn't known. */
+        public final int artResource;
+        public final int category;
+        public final int severity;
+
+        Condition(int iconResource, int artResource, int category, int severity) {
+            this.iconResource = iconResource;
+            this.artResource = artResource;
+            this.category = category;
+            this.severity = severity;
+        }
+    }
+
+    public static final Condition UNKNOWN = new Condition(-1, -1, CATEGORY_UNKNOWN, SEVERITY_NONE);
+
+    private static final int FIRST_CODE = 200;
+    private static final int LAST_CODE = 804;
+
+    private static final Condition[] CONDITIONS = new Condition[LAST_CODE - FIRST_CODE + 1];
+
+    static {
+        // Every code in a documented group gets the group's look, so a code added to a group
+        // later still has an icon
+        fill(200, 232, R.drawable.ic_storm, R.drawable.art_storm, CATEGORY_STORM,
+                SEVERITY_MODERATE);
+        fill(300, 321, R.drawable.ic_light_rain, R.drawable.art_light_rain, CATEGORY_DRIZZLE,
+                SEVERITY_LIGHT);
+        fill(500, 504, R.drawable.ic_rain, R.drawable.art_rain, CATEGORY_RAIN,
+                SEVERITY_MODERATE);
+        fill(511, 511, R.drawable.ic_snow, R.drawable.art_snow, CATEGORY_SNOW,
+                SEVERITY_SEVERE);
+        fill(520, 531, R.drawable.ic_rain, R.drawable.art_rain, CATEGORY_RAIN,
+                SEVERITY_MODERATE);
+        fill(600, 622, R.drawable.ic_snow, R.drawable.art_snow, CATEGORY_SNOW,
+                SEVERITY_MODERATE);
+        fill(701, 762, R.drawable.ic_fog, R.drawable.art_fog, CATEGORY_ATMOSPHERE,
+                SEVERITY_LIGHT);
+        fill(771, 781, R.drawable.ic_storm, R.drawable.art_storm, CATEGORY_STORM,
+                SEVERITY_SEVERE);
+        fill(800, 800, R.drawable.ic_clear, R.drawable.art_clear, CATEGORY_CLEAR,
+                SEVERITY_NONE);
+        fill(801, 801, R.drawable.ic_light_clouds, R.drawable.art_light_clouds,
+                CATEGORY_LIGHT_CLOUDS, SEVERITY_NONE);
+        fill(802, 804, R.drawable.ic_cloudy, R.drawable.art_clouds, CATEGORY_CLOUDS,
+                SEVERITY_NONE);
+
+        // Codes that are lighter or heavier than the rest of their group
+        severity(SEVERITY_SEVERE, 202, 212, 221, 232);
+        severity(SEVERITY_LIGHT, 500, 520, 600, 620);
+        severity(SEVERITY_SEVERE, 502, 503, 504, 522, 602, 622);
+        severity(SEVERITY_MODERATE, 731, 751, 761);
+        severity(SEVERITY_SEVERE, 762);
+    }
+
+    private WeatherConditions() {
+    }
+
+    /**
+     * @param weatherId from OpenWeatherMap API response
+     * @return the condition, or {@link #UNKNOWN} if no relation is found.
+     */
+    public static Condition get(int weatherId) {
+        int index = weatherId - FIRST_CODE;
+        if (index < 0 || index >= CONDITIONS.length || CONDITIONS[index] == null) {
+            return UNKNOWN;
+        }
+        return CONDITIONS[index];
+    }
+
+    private static void fill(int first, int last, int iconResource, int artResource,
+                             int category, int severity) {
+        Condition condition = new Condition(iconResource, artResource, category, severity);
+        for (int code = first; code <= last; code++) {
+            CONDITIONS[code - FIRST_CODE] = condition;
+        }
+    }
+
+    private static void severity(int severity, int... codes) {
+        for (int code : codes) {
+            Condition condition = CONDITIONS[code - FIRST_CODE];
+            CONDITIONS[code - FIRST_CODE] = new Condition(condition.iconResource,
+                    condition.artResource, condition.category, severity);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.content.ContentValues;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import com.example.android.sunshine.data.WeatherContract.LocationEntry;
+import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
+
+/**
+ * Statements for writing weather and location rows, compiled once per batch and bound by
+ * column index, instead of having SQLiteDatabase build the SQL from the ContentValues of every
+ * row.  Rows that don't have exactly the expected columns fall back to SQLiteDatabase, so the
+ * results are the same either way.
+ * <p/>
+ * Only use an instance from the thread that owns the batch's transaction, and close it when
+ * the batch is done.
+ */
+class BatchStatements {
+
+    private static final String[] WEATHER_COLUMNS = {
+            WeatherEntry.COLUMN_LOC_KEY,
+            WeatherEntry.COLUMN_DATE,
+            WeatherEntry.COLUMN_SHORT_DESC,
+            WeatherEntry.COLUMN_WEATHER_ID,
+            WeatherEntry.COLUMN_MIN_TEMP,
+            WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherEntry.COLUMN_HUMIDITY,
+            WeatherEntry.COLUMN_PRESSURE,
+            WeatherEntry.COLUMN_WIND_SPEED,
+            WeatherEntry.COLUMN_DEGREES,
+    };
+
+    private static final String[] LOCATION_COLUMNS = {
+            LocationEntry.COLUMN_LOCATION_SETTING,
+            LocationEntry.COLUMN_CITY_NAME,
+            LocationEntry.COLUMN_COORD_LAT,
+            LocationEntry.COLUMN_COORD_LONG,
+            LocationEntry.COLUMN_LAST_VIEWED,
+            LocationEntry.COLUMN_CITY_ID,
+            LocationEntry.COLUMN_LAST_FETCHED,
+            LocationEntry.COLUMN_EXPIRES_AT,
+    };
+
+    private final SQLiteDatabase mDb;
+
+    private SQLiteStatement mInsertWeather;
+    private SQLiteStatement mUpdateWeather;
+    private SQLiteStatement mInsertLocation;
+
+    BatchStatements(SQLiteDatabase db) {
+        mDb = db;
+    }
+
+    /**
+     * @return the row ID of the new weather row, or -1 if it couldn't be inserted.
+     */
+    long insertWeather(ContentValues values) {
+        if (!hasExactly(values, WEATHER_COLUMNS)) {
+            return mDb.insert(WeatherEntry.TABLE_NAME, null, values);
+        }
+
+        if (mInsertWeather == null) {
+            mInsertWeather = mDb.compileStatement(
+                    buildInsert(WeatherEntry.TABLE_NAME, WEATHER_COLUMNS));
+        }
+        bind(mInsertWeather, values, WEATHER_COLUMNS);
+        return executeInsert(mInsertWeather);
+    }
+
+    /**
+     * @return the number of rows updated.
+     */
+    int updateWeather(long id, ContentValues values) {
+        if (!hasExactly(values, WEATHER_COLUMNS)) {
+            return mDb.update(WeatherEntry.TABLE_NAME, values,
+                    WeatherEntry._ID + " = ?", new String[] { Long.toString(id) });
+        }
+
+        if (mUpdateWeather == null) {
+            StringBuilder sql = new StringBuilder("UPDATE ").append(WeatherEntry.TABLE_NAME)
+                    .append(" SET ");
+            for (int i = 0; i < WEATHER_COLUMNS.length; i++) {
+                sql.append(i > 0 ? ", " : "").append(WEATHER_COLUMNS[i]).append(" = ?");
+            }
+            sql.append(" WHERE ").append(WeatherEntry._ID).append(" = ?");
+            mUpdateWeather = mDb.compileStatement(sql.toString());
+        }
+        bind(mUpdateWeather, values, WEATHER_COLUMNS);
+        mUpdateWeather.bindLong(WEATHER_COLUMNS.length + 1, id);
+        return mUpdateWeather.executeUpdateDelete();
+    }
+
+    /**
+     * @return the row ID of the new location row, or -1 if it couldn't be inserted or the
+     * location setting was already stored.
+     */
+    long insertLocation(ContentValues values) {
+        if (!hasExactly(values, LOCATION_COLUMNS)) {
+            return mDb.insert(LocationEntry.TABLE_NAME, null, values);
+        }
+
+        if (mInsertLocation == null) {
+            mInsertLocation = mDb.compileStatement(
+                    buildInsert(LocationEntry.TABLE_NAME, LOCATION_COLUMNS));
+        }
+        bind(mInsertLocation, values, LOCATION_COLUMNS);
+        return executeInsert(mInsertLocation);
+    }
+
+    void close() {
+        if (mInsertWeather != null) {
+            mInsertWeather.close();
+        }
+        if (mUpdateWeather != null) {
+            mUpdateWeather.close();
+        }
+        if (mInsertLocation != null) {
+            mInsertLocation.close();
+        }
+    }
+
+    // Like SQLiteDatabase.insert, report a failed insert as -1 rather than throw.
+    private static long executeInsert(SQLiteStatement statement) {
+        try {
+            return statement.executeInsert();
+        } catch (SQLException e) {
+            return -1;
+        }
+    }
+
+    private static boolean hasExactly(ContentValues values, String[] columns) {
+        if (values.size() != columns.length) {
+            return false;
+        }
+        for (String column : columns) {
+            if (!values.containsKey(column)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String buildInsert(String table, String[] columns) {
+        StringBuilder sql = new StringBuilder("INSERT INTO ").append(table).append(" (");
+        for (int i = 0; i < columns.length; i++) {
+            sql.append(i > 0 ? ", " : "").append(columns[i]);
+        }
+        sql.append(") VALUES (");
+        for (int i = 0; i < columns.length; i++) {
+            sql.append(i > 0 ? ", ?" : "?");
+        }
+        return sql.append(")").toString();
+    }
+
+    private static void bind(SQLiteStatement statement, ContentValues values, String[] columns) {
+        for (int i = 0; i < columns.length; i++) {
+            Object value = values.get(columns[i]);
+            int index = i + 1;
+
+            if (value == null) {
+                statement.bindNull(index);
+            } else if (value instanceof Double || value instanceof Float) {
+                statement.bindDouble(index, ((Number) value).doubleValue());
+            } else if (value instanceof Number) {
+                statement.bindLong(index, ((Number) value).longValue());
+            } else if (value instanceof Boolean) {
+                statement.bindLong(index, ((Boolean) value) ? 1 : 0);
+            } else if (value instanceof byte[]) {
+                statement.bindBlob(index, (byte[]) value);
+            } else {
+                statement.bindString(index, value.toString());
+            }
+        }
+    }
+}
@@ -0,0 +1,262 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.os.SystemClock;
+
+import java.text.DateFormat;
+import java.text.DateFormatSymbols;
+import java.text.DecimalFormatSymbols;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Converts between the representations of a day used across the app: yyyyMMdd keys as found
+ * in URIs, epoch days as stored in the database, and the text shown to users.
+ * <p/>
+ * Keys and epoch days are converted with integer arithmetic only, and so are the fields of
+ * display text, which is put together from the locale's day and month names.  Those names are
+ * kept per thread and reread when the default locale changes, and the default time zone is
+ * looked up at most once a minute, so none of this allocates per call beyond the returned
+ * value.  The medium date is the exception: its pattern depends on the locale, so it still
+ * goes through a DateFormat, which allocates a little on every call.  All methods are
+ * thread-safe.
+ */
+public final class DateCodec {
+
+    private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+    // TimeZone.getDefault() returns a copy every time, so it's only asked this often.  Timed
+    // by the clock, never by the time being converted, which may be any day.
+    private static final long TIME_ZONE_REFRESH_MILLIS = 60 * 1000;
+
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+    private static volatile TimeZone sTimeZone = TimeZone.getDefault();
+    private static volatile long sTimeZoneCheckedAt = SystemClock.elapsedRealtime();
+    private static final AtomicLong sTimeZoneLookups = new AtomicLong();
+
+    // 1970-01-01 was a Thursday
+    private static final int EPOCH_DAY_OF_WEEK = Calendar.THURSDAY;
+
+    /**
+     * The names and formatter of one thread, for one locale.  Day names are indexed by
+     * Calendar day of the week and month names from 0 for January, as DateFormatSymbols has
+     * them.  The medium date formats epoch days as UTC midnight, so the time zone never
+     * shifts them to a neighbouring day.
+     */
+    private static class Formatters {
+        final Locale locale;
+        final String[] dayNames;
+        final String[] shortDayNames;
+        final String[] monthNames;
+        final String[] shortMonthNames;
+        final char zeroDigit;
+        final StringBuilder builder = new StringBuilder();
+        final DateFormat mediumDate;
+        final Date date = new Date();
+
+        Formatters(Locale locale) {
+            this.locale = locale;
+            DateFormatSymbols symbols = DateFormatSymbols.getInstance(locale);
+            dayNames = symbols.getWeekdays();
+            shortDayNames = symbols.getShortWeekdays();
+            monthNames = symbols.getMonths();
+            shortMonthNames = symbols.getShortMonths();
+            zeroDigit = DecimalFormatSymbols.getInstance(locale).getZeroDigit();
+            mediumDate = DateFormat.getDateInstance(DateFormat.MEDIUM, locale);
+            mediumDate.setTimeZone(UTC);
+        }
+
+        /**
+         * Appends the day of the month as two digits, like "dd" in a SimpleDateFormat.
+         */
+        StringBuilder appendDayOfMonth(int key) {
+            int day = key % 100;
+            return builder.append((char) (zeroDigit + day / 10))
+                    .append((char) (zeroDigit + day % 10));
+        }
+    }
+
+    private static final ThreadLocal<Formatters> sFormatters = new ThreadLocal<Formatters>();
+
+    private DateCodec() {
+    }
+
+    /**
+     * @return the epoch day of the date with the given yyyyMMdd key.
+     */
+    public static long parseKey(String key) {
+        int yyyyMMdd = Integer.parseInt(key);
+        return toEpochDay(yyyyMMdd / 10000, (yyyyMMdd / 100) % 100, yyyyMMdd % 100);
+    }
+
+    /**
+     * @return the yyyyMMdd key of the epoch day, as a number.
+     */
+    public static int toKeyNumber(long epochDay) {
+        // Civil from days, see http://howardhinnant.github.io/date_algorithms.html
+        long z = epochDay + 719468;
+        long era = (z >= 0 ? z : z - 146096) / 146097;
+        long dayOfEra = z - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long monthIndex = (5 * dayOfYear + 2) / 153;
+        long day = dayOfYear - (153 * monthIndex + 2) / 5 + 1;
+        long month = monthIndex < 10 ? monthIndex + 3 : monthIndex - 9;
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+        return (int) (year * 10000 + month * 100 + day);
+    }
+
+    /**
+     * @return the yyyyMMdd key of the epoch day.
+     */
+    public static String formatKey(long epochDay) {
+        return Integer.toString(toKeyNumber(epochDay));
+    }
+
+    /**
+     * @return the days between 1970-01-01 and the given date.
+     */
+    public static long toEpochDay(long year, long month, long day) {
+        // Days from civil, see http://howardhinnant.github.io/date_algorithms.html
+        year -= month <= 2 ? 1 : 0;
+        long era = (year >= 0 ? year : year - 399) / 400;
+        long yearOfEra = year - era * 400;
+        long dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    /**
+     * @return the epoch day of the local calendar day the given time falls on.
+     */
+    public static long getEpochDay(long millis) {
+        long localMillis = millis + getTimeZone().getOffset(millis);
+        long day = localMillis / MILLIS_PER_DAY;
+        // Round towards the past for times before 1970
+        return localMillis < 0 && localMillis % MILLIS_PER_DAY != 0 ? day - 1 : day;
+    }
+
+    /**
+     * @return the epoch day of today, in the default time zone.
+     */
+    public static long today() {
+        return getEpochDay(System.currentTimeMillis());
+    }
+
+    /**
+     * @return local midnight at the start of the epoch day.
+     */
+    public static Date toLocalDate(long epochDay) {
+        int key = toKeyNumber(epochDay);
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(key / 10000, (key / 100) % 100 - 1, key % 100);
+        return calendar.getTime();
+    }
+
+    /**
+     * @return the name of the day of the week, e.g. "Wednesday".
+     */
+    public static String formatDayName(long epochDay) {
+        return getFormatters().dayNames[getDayOfWeek(epochDay)];
+    }
+
+    /**
+     * @return the month and day, e.g. "June 24".
+     */
+    public static String formatMonthDay(long epochDay) {
+        Formatters formatters = getFormatters();
+        int key = toKeyNumber(epochDay);
+        formatters.builder.setLength(0);
+        formatters.builder.append(formatters.monthNames[(key / 100) % 100 - 1]).append(' ');
+        return formatters.appendDayOfMonth(key).toString();
+    }
+
+    /**
+     * @return the abbreviated day, month and day of the month, e.g. "Mon Jun 03".
+     */
+    public static String formatShortDate(long epochDay) {
+        Formatters formatters = getFormatters();
+        int key = toKeyNumber(epochDay);
+        formatters.builder.setLength(0);
+        formatters.builder.append(formatters.shortDayNames[getDayOfWeek(epochDay)]).append(' ')
+                .append(formatters.shortMonthNames[(key / 100) % 100 - 1]).append(' ');
+        return formatters.appendDayOfMonth(key).toString();
+    }
+
+    /**
+     * @return the date in the medium format of the locale, e.g. "Jun 24, 2014".
+     */
+    public static String formatMediumDate(long epochDay) {
+        Formatters formatters = getFormatters();
+        formatters.date.setTime(epochDay * MILLIS_PER_DAY);
+        return formatters.mediumDate.format(formatters.date);
+    }
+
+    /**
+     * @return the Calendar day of the week of the epoch day, from SUNDAY to SATURDAY.
+     */
+    private static int getDayOfWeek(long epochDay) {
+        long daysSinceSunday = (epochDay + EPOCH_DAY_OF_WEEK - Calendar.SUNDAY) % 7;
+        return (int) (daysSinceSunday < 0 ? daysSinceSunday + 7 : daysSinceSunday) +
+                Calendar.SUNDAY;
+    }
+
+    private static Formatters getFormatters() {
+        Formatters formatters = sFormatters.get();
+        // Locale.getDefault() returns the same instance until the locale changes
+        Locale locale = Locale.getDefault();
+        if (formatters == null || !formatters.locale.equals(locale)) {
+            formatters = new Formatters(locale);
+            sFormatters.set(formatters);
+        }
+        return formatters;
+    }
+
+    private static TimeZone getTimeZone() {
+        long now = SystemClock.elapsedRealtime();
+        if (now - sTimeZoneCheckedAt > TIME_ZONE_REFRESH_MILLIS) {
+            lookUpTimeZone(now);
+        }
+        return sTimeZone;
+    }
+
+    private static void lookUpTimeZone(long now) {
+        sTimeZoneLookups.incrementAndGet();
+        sTimeZone = TimeZone.getDefault();
+        sTimeZoneCheckedAt = now;
+    }
+
+    /**
+     * Picks up a new default time zone right away, rather than within a minute.
+     */
+    public static void onTimeZoneChanged() {
+        lookUpTimeZone(SystemClock.elapsedRealtime());
+    }
+
+    /**
+     * @return how many times the default time zone was looked up.
+     */
+    public static long getTimeZoneLookupCount() {
+        return sTimeZoneLookups.get();
+    }
+}
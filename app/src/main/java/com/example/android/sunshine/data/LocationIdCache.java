@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Process-wide cache from location setting to the _ID of its row in the location table, so a
+ * sync doesn't have to query the provider just to find the key of its weather rows.
+ * <p/>
+ * Only rows that exist are cached.  WeatherProvider drops entries whenever locations are
+ * inserted, updated or deleted, and everything when the database is created.  Lookups that
+ * raced with such a change are not cached: read {@link #getGeneration()} before querying and
+ * pass it to {@link #put(String, long, int)}.
+ */
+public final class LocationIdCache {
+
+    // Far more locations than anyone keeps; the least recently used ones are dropped first.
+    static final int MAX_ENTRIES = 64;
+
+    private static final Map<String, Long> sIds =
+            new LinkedHashMap<String, Long>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                    return size() > MAX_ENTRIES;
+                }
+            };
+
+    private static int sGeneration;
+
+    private LocationIdCache() {
+    }
+
+    /**
+     * @return the _ID of the location, or null if it isn't cached.
+     */
+    public static synchronized Long get(String locationSetting) {
+        return sIds.get(locationSetting);
+    }
+
+    /**
+     * Caches the _ID of a location, unless the cache was invalidated since the given
+     * generation was read.
+     */
+    public static synchronized void put(String locationSetting, long id, int generation) {
+        if (generation == sGeneration) {
+            sIds.put(locationSetting, id);
+        }
+    }
+
+    public static synchronized int getGeneration() {
+        return sGeneration;
+    }
+
+    public static synchronized void remove(String locationSetting) {
+        sGeneration++;
+        sIds.remove(locationSetting);
+    }
+
+    public static synchronized void clear() {
+        sGeneration++;
+        sIds.clear();
+    }
+}
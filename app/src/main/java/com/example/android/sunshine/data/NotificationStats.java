@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.net.Uri;
+import android.util.Log;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-process counts of the change notifications sent for weather and location data, and of
+ * the loads they trigger in the loaders, both in total and by location setting.  They make it
+ * easy to check that a sync of one location doesn't reload the screens of another.
+ */
+public final class NotificationStats {
+
+    private static final String LOG_TAG = NotificationStats.class.getSimpleName();
+
+    private static long sNotifications;
+    private static long sLoaderReloads;
+    private static final Map<String, Long> sNotificationsByLocation = new HashMap<String, Long>();
+    private static final Map<String, Long> sLoaderReloadsByLocation = new HashMap<String, Long>();
+
+    private NotificationStats() {
+    }
+
+    public static synchronized void recordNotification(Uri uri) {
+        sNotifications++;
+        increment(sNotificationsByLocation, uri);
+        Log.v(LOG_TAG, "Notified " + uri + ", " + sNotifications + " notifications so far");
+    }
+
+    public static synchronized void recordLoaderReload(Uri uri) {
+        sLoaderReloads++;
+        increment(sLoaderReloadsByLocation, uri);
+        Log.v(LOG_TAG, "Loaded " + uri + ", " + sLoaderReloads + " loads so far");
+    }
+
+    public static synchronized long getNotificationCount() {
+        return sNotifications;
+    }
+
+    /**
+     * @return the notifications sent for the weather of one location, not counting the ones
+     * sent for all of weather.
+     */
+    public static synchronized long getNotificationCount(String locationSetting) {
+        Long count = sNotificationsByLocation.get(locationSetting);
+        return count != null ? count : 0;
+    }
+
+    public static synchronized long getLoaderReloadCount() {
+        return sLoaderReloads;
+    }
+
+    public static synchronized long getLoaderReloadCount(String locationSetting) {
+        Long count = sLoaderReloadsByLocation.get(locationSetting);
+        return count != null ? count : 0;
+    }
+
+    public static synchronized void reset() {
+        sNotifications = 0;
+        sLoaderReloads = 0;
+        sNotificationsByLocation.clear();
+        sLoaderReloadsByLocation.clear();
+    }
+
+    // Counts weather/<location>/... URIs against their location
+    private static void increment(Map<String, Long> counts, Uri uri) {
+        List<String> segments = uri.getPathSegments();
+        if (segments.size() < 2 || !WeatherContract.PATH_WEATHER.equals(segments.get(0))) {
+            return;
+        }
+
+        String locationSetting = segments.get(1);
+        Long count = counts.get(locationSetting);
+        counts.put(locationSetting, count != null ? count + 1 : 1);
+    }
+}
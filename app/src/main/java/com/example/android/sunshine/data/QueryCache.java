@@ -0,0 +1,244 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Snapshots of WeatherProvider query results, so that loaders restarted by a rotation, a
+ * selection in the two-pane layout or onResume are served from memory instead of SQLite.
+ * <p/>
+ * Results are kept by everything that determines them: the route, URI, projection, selection,
+ * arguments and sort order.  Each one belongs to the location setting in its URI, or to no
+ * location when the query could read any of them.  When weather changes, the provider drops
+ * the results of the locations it changed along with those that belong to none; when only a
+ * column of the location table that no weather query reads changes, just the results of
+ * location table queries go.  The least
+ * recently used results are dropped once the cache holds more than its byte budget.
+ */
+public class QueryCache {
+
+    // Rough per-value and per-row overheads, enough to keep the budget honest
+    private static final int VALUE_OVERHEAD_BYTES = 16;
+    private static final int ROW_OVERHEAD_BYTES = 16;
+
+    private static class Entry {
+        final String locationSetting;
+        final boolean locationsOnly;
+        final String[] columns;
+        final Object[][] rows;
+        final int bytes;
+
+        Entry(String locationSetting, boolean locationsOnly, String[] columns, Object[][] rows,
+              int bytes) {
+            this.locationSetting = locationSetting;
+            this.locationsOnly = locationsOnly;
+            this.columns = columns;
+            this.rows = rows;
+            this.bytes = bytes;
+        }
+    }
+
+    private final int mMaxBytes;
+    private final Map<String, Entry> mEntries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+    private int mBytes;
+    private int mGeneration;
+
+    private long mHits;
+    private long mMisses;
+    private long mEvictions;
+
+    public QueryCache(int maxBytes) {
+        mMaxBytes = maxBytes;
+    }
+
+    static String buildKey(int match, String uri, String[] projection, String selection,
+                           String[] selectionArgs, String sortOrder) {
+        // The separator can't appear in a URI, and is unlikely anywhere else
+        return match + "\u0001" + uri + "\u0001" + Arrays.toString(projection) + "\u0001" +
+                selection + "\u0001" + Arrays.toString(selectionArgs) + "\u0001" + sortOrder;
+    }
+
+    /**
+     * @return a new cursor over the cached result, or null if it isn't cached.
+     */
+    synchronized Cursor get(String key) {
+        Entry entry = mEntries.get(key);
+        if (entry == null) {
+            mMisses++;
+            return null;
+        }
+
+        mHits++;
+        return toCursor(entry);
+    }
+
+    /**
+     * The generation to pass to {@link #put}, read before running the query.
+     */
+    synchronized int getGeneration() {
+        return mGeneration;
+    }
+
+    /**
+     * Reads the whole cursor into the cache, and closes it.  The result is only kept if nothing
+     * was invalidated since the generation was read, since it may predate that change.
+     *
+     * @param locationSetting the location the result belongs to, or null for any
+     * @param locationsOnly whether the result was read from the location table alone
+     * @return a cursor over the same result
+     */
+    Cursor put(String key, String locationSetting, boolean locationsOnly, Cursor cursor,
+               int generation) {
+        Entry entry;
+        try {
+            entry = snapshot(locationSetting, locationsOnly, cursor);
+        } finally {
+            cursor.close();
+        }
+
+        synchronized (this) {
+            if (generation == mGeneration && entry.bytes <= mMaxBytes) {
+                Entry previous = mEntries.put(key, entry);
+                if (previous != null) {
+                    mBytes -= previous.bytes;
+                }
+                mBytes += entry.bytes;
+                trimToSize();
+            }
+        }
+        return toCursor(entry);
+    }
+
+    /**
+     * Drops the results of one location, and those that belong to no location.
+     */
+    synchronized void invalidate(String locationSetting) {
+        mGeneration++;
+        Iterator<Entry> iterator = mEntries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.locationSetting == null || entry.locationSetting.equals(locationSetting)) {
+                mBytes -= entry.bytes;
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Drops the results read from the location table alone.
+     */
+    synchronized void invalidateLocations() {
+        mGeneration++;
+        Iterator<Entry> iterator = mEntries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.locationsOnly) {
+                mBytes -= entry.bytes;
+                iterator.remove();
+            }
+        }
+    }
+
+    synchronized void invalidateAll() {
+        mGeneration++;
+        mEntries.clear();
+        mBytes = 0;
+    }
+
+    public synchronized long getHitCount() {
+        return mHits;
+    }
+
+    public synchronized long getMissCount() {
+        return mMisses;
+    }
+
+    public synchronized long getEvictionCount() {
+        return mEvictions;
+    }
+
+    /**
+     * @return the share of lookups served from memory, between 0 and 1.
+     */
+    public synchronized double getHitRatio() {
+        long lookups = mHits + mMisses;
+        return lookups == 0 ? 0 : (double) mHits / lookups;
+    }
+
+    public synchronized int getSizeBytes() {
+        return mBytes;
+    }
+
+    private void trimToSize() {
+        Iterator<Entry> iterator = mEntries.values().iterator();
+        while (mBytes > mMaxBytes && iterator.hasNext()) {
+            mBytes -= iterator.next().bytes;
+            iterator.remove();
+            mEvictions++;
+        }
+    }
+
+    private static Entry snapshot(String locationSetting, boolean locationsOnly, Cursor cursor) {
+        String[] columns = cursor.getColumnNames();
+        Object[][] rows = new Object[cursor.getCount()][];
+        int bytes = 0;
+
+        cursor.moveToPosition(-1);
+        while (cursor.moveToNext()) {
+            Object[] row = new Object[columns.length];
+            for (int i = 0; i < columns.length; i++) {
+                switch (cursor.getType(i)) {
+                    case Cursor.FIELD_TYPE_INTEGER:
+                        row[i] = cursor.getLong(i);
+                        break;
+                    case Cursor.FIELD_TYPE_FLOAT:
+                        row[i] = cursor.getDouble(i);
+                        break;
+                    case Cursor.FIELD_TYPE_STRING:
+                        row[i] = cursor.getString(i);
+                        bytes += 2 * ((String) row[i]).length();
+                        break;
+                    case Cursor.FIELD_TYPE_BLOB:
+                        row[i] = cursor.getBlob(i);
+                        bytes += ((byte[]) row[i]).length;
+                        break;
+                    default:
+                        row[i] = null;
+                        break;
+                }
+            }
+            rows[cursor.getPosition()] = row;
+            bytes += ROW_OVERHEAD_BYTES + VALUE_OVERHEAD_BYTES * columns.length;
+        }
+
+        return new Entry(locationSetting, locationsOnly, columns, rows, bytes);
+    }
+
+    private static Cursor toCursor(Entry entry) {
+        MatrixCursor cursor = new MatrixCursor(entry.columns, entry.rows.length);
+        for (Object[] row : entry.rows) {
+            cursor.addRow(row);
+        }
+        return cursor;
+    }
+}
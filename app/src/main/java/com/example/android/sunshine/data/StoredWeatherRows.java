@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The stored weather rows of each location a batch inserts weather for.  A batch inserts a
+ * forecast one day at a time, so the rows of a location are read once, from the first date
+ * inserted for it on, and every day after that is compared against them instead of being
+ * queried for on its own.
+ * <p/>
+ * A day is only covered until it's written, since the rows read no longer match it then, and
+ * nothing is covered after the batch updates or deletes weather any other way.  Only use an
+ * instance from the thread that owns the batch's transaction, and close it when the batch is
+ * done.
+ */
+class StoredWeatherRows {
+
+    private static class Location {
+        final Cursor cursor;
+        final long startDate;
+        final Map<Long, Integer> positionByDate = new HashMap<Long, Integer>();
+        final Set<Long> writtenDates = new HashSet<Long>();
+
+        Location(Cursor cursor, long startDate) {
+            this.cursor = cursor;
+            this.startDate = startDate;
+        }
+    }
+
+    private final SQLiteDatabase mDb;
+    private final Map<Long, Location> mLocations = new HashMap<Long, Location>();
+    private int mQueryCount;
+
+    StoredWeatherRows(SQLiteDatabase db) {
+        mDb = db;
+    }
+
+    /**
+     * @return whether the stored row of the location on the date, or that there is none, is
+     * known.  The first call for a location reads its rows from the date on.
+     */
+    boolean covers(long locationId, long date) {
+        Location location = mLocations.get(locationId);
+        if (location == null) {
+            location = load(locationId, date);
+            mLocations.put(locationId, location);
+        }
+        return date >= location.startDate && !location.writtenDates.contains(date);
+    }
+
+    /**
+     * @return the cursor moved to the stored row of the location on the date, or null if there
+     * is none.  Only call this for a day that is covered.
+     */
+    Cursor moveTo(long locationId, long date) {
+        Location location = mLocations.get(locationId);
+        Integer position = location.positionByDate.get(date);
+        if (position == null) {
+            return null;
+        }
+        location.cursor.moveToPosition(position);
+        return location.cursor;
+    }
+
+    /**
+     * Stops covering a day once it has been written.
+     */
+    void written(long locationId, long date) {
+        mLocations.get(locationId).writtenDates.add(date);
+    }
+
+    /**
+     * Forgets every row read, for when weather is written other than through inserts.
+     */
+    void clear() {
+        for (Location location : mLocations.values()) {
+            location.cursor.close();
+        }
+        mLocations.clear();
+    }
+
+    /**
+     * @return how many times the rows of a location were read.
+     */
+    int getQueryCount() {
+        return mQueryCount;
+    }
+
+    void close() {
+        clear();
+    }
+
+    private Location load(long locationId, long startDate) {
+        mQueryCount++;
+        Cursor cursor = mDb.query(WeatherEntry.TABLE_NAME,
+                null,
+                WeatherEntry.COLUMN_LOC_KEY + " = ? AND " + WeatherEntry.COLUMN_DATE + " >= ?",
+                new String[] { Long.toString(locationId), Long.toString(startDate) },
+                null,
+                null,
+                null);
+
+        Location location = new Location(cursor, startDate);
+        int dateColumn = cursor.getColumnIndex(WeatherEntry.COLUMN_DATE);
+        while (cursor.moveToNext()) {
+            location.positionByDate.put(cursor.getLong(dateColumn), cursor.getPosition());
+        }
+        return location;
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.net.Uri;
+
+import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The weather rows changed by one or more writes, by location and date, so that only the
+ * observers showing them are notified.  A location with a single changed day gets
+ * weather/&lt;location&gt;/&lt;date&gt;, one with several gets weather/&lt;location&gt;, and only
+ * changes that can't be pinned to a location notify all of weather.
+ */
+class WeatherChangeSet {
+
+    private final Map<Long, Set<Long>> mDatesByLocation = new HashMap<Long, Set<Long>>();
+    private boolean mUnscoped;
+
+    void add(long locationId, long date) {
+        Set<Long> dates = mDatesByLocation.get(locationId);
+        if (dates == null) {
+            dates = new HashSet<Long>();
+            mDatesByLocation.put(locationId, dates);
+        }
+        dates.add(date);
+    }
+
+    /**
+     * Records a change that may affect any location.
+     */
+    void addUnscoped() {
+        mUnscoped = true;
+    }
+
+    void addAll(WeatherChangeSet other) {
+        mUnscoped |= other.mUnscoped;
+        for (Map.Entry<Long, Set<Long>> entry : other.mDatesByLocation.entrySet()) {
+            for (long date : entry.getValue()) {
+                add(entry.getKey(), date);
+            }
+        }
+    }
+
+    boolean isEmpty() {
+        return !mUnscoped && mDatesByLocation.isEmpty();
+    }
+
+    boolean isUnscoped() {
+        return mUnscoped;
+    }
+
+    Set<Long> getLocationIds() {
+        return mDatesByLocation.keySet();
+    }
+
+    /**
+     * @param locationSettings the location setting of each location ID
+     * @return the URIs to notify for these changes
+     */
+    List<Uri> getUris(Map<Long, String> locationSettings) {
+        if (mUnscoped) {
+            return Collections.singletonList(WeatherEntry.CONTENT_URI);
+        }
+
+        List<Uri> uris = new ArrayList<Uri>(mDatesByLocation.size());
+        for (Map.Entry<Long, Set<Long>> entry : mDatesByLocation.entrySet()) {
+            String locationSetting = locationSettings.get(entry.getKey());
+            if (locationSetting == null) {
+                // The location is gone, so there's no narrower URI for its weather
+                return Collections.singletonList(WeatherEntry.CONTENT_URI);
+            }
+
+            Set<Long> dates = entry.getValue();
+            if (dates.size() == 1) {
+                uris.add(WeatherEntry.buildWeatherLocationWithDate(locationSetting,
+                        WeatherContract.getDateString(dates.iterator().next())));
+            } else {
+                uris.add(WeatherEntry.buildWeatherLocation(locationSetting));
+            }
+        }
+        return uris;
+    }
+}
@@ -19,8 +19,6 @@ import android.content.ContentUris;
 import android.net.Uri;
 import android.provider.BaseColumns;
 
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.Date;
 
 /**
@@ -35,6 +33,14 @@ public class WeatherContract {
     public static final String PATH_WEATHER = "weather";
     public static final String PATH_LOCATION = "location";
 
+    // Provider method, through ContentResolver.call, that gives the space of deleted rows back
+    // to the file system.  Must not be called while holding a transaction.
+    public static final String METHOD_RECLAIM_SPACE = "reclaim_space";
+
+    // Provider method that notifies the observers of the URI given as its argument, for a
+    // change in how the stored data is shown rather than in the data itself.
+    public static final String METHOD_NOTIFY_DISPLAY_CHANGE = "notify_display_change";
+
     /* Inner class that defines the table contents of the weather table */
     public static final class WeatherEntry implements BaseColumns {
 
@@ -50,8 +56,9 @@ public class WeatherContract {
 
         // Column with the foreign key into the location table.
         public static final String COLUMN_LOC_KEY = "location_id";
-        // Date, stored as Text with format yyyy-MM-dd
-        public static final String COLUMN_DATETEXT = "date";
+        // Date, stored as an integer number of days since 1970-01-01 (see getDbDate).
+        // URIs still carry dates as text with format yyyyMMdd.
+        public static final String COLUMN_DATE = "date";
         // Weather id as returned by API, to identify the icon to be used
         public static final String COLUMN_WEATHER_ID = "weather_id";
 
@@ -86,7 +93,7 @@ public class WeatherContract {
         public static Uri buildWeatherLocationWithStartDate(
                 String locationSetting, String startDate) {
             return CONTENT_URI.buildUpon().appendPath(locationSetting)
-                    .appendQueryParameter(COLUMN_DATETEXT, startDate).build();
+                    .appendQueryParameter(COLUMN_DATE, startDate).build();
         }
 
         public static Uri buildWeatherLocationWithDate(String locationSetting, String date) {
@@ -102,7 +109,7 @@ public class WeatherContract {
         }
 
         public static String getStartDateFromUri(Uri uri) {
-            return uri.getQueryParameter(COLUMN_DATETEXT);
+            return uri.getQueryParameter(COLUMN_DATE);
         }
     }
 
@@ -122,34 +129,70 @@ public class WeatherContract {
         public static final String COLUMN_COORD_LAT = "latitude";
         public static final String COLUMN_COORD_LONG = "longitude";
 
+        // When the forecast of this location was last shown, in milliseconds since the epoch.
+        // Locations nobody has looked at for a while are evicted by the sync adapter.
+        public static final String COLUMN_LAST_VIEWED = "last_viewed";
+
+        // How many days before today to keep the weather of this location for.
+        public static final String COLUMN_HISTORY_DAYS = "history_days";
+
+        // OpenWeatherMap's id of the city, learned from its first forecast; 0 until then.
+        // Locations with an id can be fetched together in one group request.
+        public static final String COLUMN_CITY_ID = "city_id";
+
+        // When the forecast of this location was last fetched or confirmed unchanged, and
+        // until when it counts as fresh, in milliseconds since the epoch; 0 if never.
+        public static final String COLUMN_LAST_FETCHED = "last_fetched";
+        public static final String COLUMN_EXPIRES_AT = "expires_at";
+
         public static Uri buildLocationUri(long id) {
             return ContentUris.withAppendedId(CONTENT_URI, id);
         }
     }
 
-    // Format used for storing dates in the database.  ALso used for converting those strings
-    // back into date objects for comparison/processing.
+    // Format used for dates in URIs and for converting those strings back into
+    // date objects for comparison/processing.
     public static final String DATE_FORMAT = "yyyyMMdd";
 
     /**
-     * Converts Date class to a string representation, used for easy comparison and database lookup.
+     * Converts Date class to a string representation, used in URIs.
      * @param date The input date
-     * @return a DB-friendly representation of the date, using the format defined in DATE_FORMAT.
+     * @return a URI-friendly representation of the date, using the format defined in DATE_FORMAT.
      */
     public static String getDbDateString(Date date){
-        // Because the API returns a unix timestamp (measured in seconds),
-        // it must be converted to milliseconds in order to be converted to valid date.
-        SimpleDateFormat sdf = new SimpleDateFormat(DATE_FORMAT);
-        return sdf.format(date);
+        return getDateString(getDbDate(date));
     }
 
     public static Date getDateFromDb(String dateString) {
-        SimpleDateFormat simpleDateFormat = new SimpleDateFormat(DATE_FORMAT);
         try {
-            return simpleDateFormat.parse(dateString);
-        } catch (ParseException e) {
+            return DateCodec.toLocalDate(DateCodec.parseKey(dateString));
+        } catch (NumberFormatException e) {
             e.printStackTrace();
             return null;
         }
     }
+
+    /**
+     * Converts a Date to the value stored in the date column: the number of days between
+     * 1970-01-01 and the local calendar day of the date.
+     */
+    public static long getDbDate(Date date) {
+        return DateCodec.getEpochDay(date.getTime());
+    }
+
+    /**
+     * Converts a date string in the format defined in DATE_FORMAT, as found in URIs, to the
+     * value stored in the date column.
+     */
+    public static long getDbDate(String dateString) {
+        return DateCodec.parseKey(dateString);
+    }
+
+    /**
+     * Converts a value of the date column back to a string in the format defined in
+     * DATE_FORMAT, as used in URIs.
+     */
+    public static String getDateString(long dbDate) {
+        return DateCodec.formatKey(dbDate);
+    }
 }
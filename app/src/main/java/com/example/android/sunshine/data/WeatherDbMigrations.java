@@ -0,0 +1,220 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * Ordered schema migrations for {@link WeatherDbHelper}, one step per database version.
+ * <p/>
+ * A step must only use SQL as it was at its own version, never the current create statements
+ * of WeatherDbHelper, otherwise later schema changes would break upgrades from old versions.
+ */
+public final class WeatherDbMigrations {
+
+    private static final String LOG_TAG = WeatherDbMigrations.class.getSimpleName();
+
+    // Steps slower than this are logged as warnings, so they show up in bug reports.
+    private static final long SLOW_MIGRATION_MILLIS = 100;
+
+    /**
+     * Upgrades the database from {@link #fromVersion} to the next version.
+     */
+    public static abstract class Migration {
+        public final int fromVersion;
+
+        Migration(int fromVersion) {
+            this.fromVersion = fromVersion;
+        }
+
+        public abstract void migrate(SQLiteDatabase db);
+    }
+
+    // The step at index i upgrades version i + 1 to version i + 2.
+    private static final Migration[] MIGRATIONS = {
+            new DateToEpochDay(),
+            new WeatherLocationDateIndex(),
+            new LocationRetention(),
+            new LocationCityId(),
+            new LocationFreshness(),
+    };
+
+    private WeatherDbMigrations() {
+    }
+
+    /**
+     * @return the step that upgrades fromVersion to fromVersion + 1, or null if there is none.
+     */
+    public static Migration get(int fromVersion) {
+        int index = fromVersion - 1;
+        if (index < 0 || index >= MIGRATIONS.length) {
+            return null;
+        }
+        return MIGRATIONS[index];
+    }
+
+    /**
+     * @return true if every step between the two versions is known.
+     */
+    public static boolean canMigrate(int oldVersion, int newVersion) {
+        for (int version = oldVersion; version < newVersion; version++) {
+            if (get(version) == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Runs every step between the two versions, in order.  SQLiteOpenHelper already wraps
+     * onUpgrade in a single transaction, so either all of them are applied or none is.
+     */
+    public static void migrate(SQLiteDatabase db, int oldVersion, int newVersion) {
+        for (int version = oldVersion; version < newVersion; version++) {
+            Migration migration = get(version);
+            if (migration == null) {
+                throw new IllegalStateException("No migration from version " + version);
+            }
+
+            long start = SystemClock.elapsedRealtime();
+            migration.migrate(db);
+            long elapsed = SystemClock.elapsedRealtime() - start;
+
+            String message = "Migrated " + migration.getClass().getSimpleName() +
+                    " (v" + version + " to v" + (version + 1) + ") in " + elapsed + " ms";
+            if (elapsed > SLOW_MIGRATION_MILLIS) {
+                Log.w(LOG_TAG, message);
+            } else {
+                Log.i(LOG_TAG, message);
+            }
+        }
+    }
+
+    /**
+     * Version 1 stored dates as yyyyMMdd text.  Since SQLite can't change the type of a column,
+     * the weather table is rebuilt with an integer date column and the existing rows are
+     * copied over, converting each date to days since 1970-01-01 along the way.
+     */
+    static class DateToEpochDay extends Migration {
+
+        DateToEpochDay() {
+            super(1);
+        }
+
+        @Override
+        public void migrate(SQLiteDatabase db) {
+            db.execSQL("ALTER TABLE weather RENAME TO weather_v1");
+
+            db.execSQL("CREATE TABLE weather (" +
+                    "_id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                    "location_id INTEGER NOT NULL, " +
+                    "date INTEGER NOT NULL, " +
+                    "short_desc TEXT NOT NULL, " +
+                    "weather_id INTEGER NOT NULL," +
+                    "min REAL NOT NULL, " +
+                    "max REAL NOT NULL, " +
+                    "humidity REAL NOT NULL, " +
+                    "pressure REAL NOT NULL, " +
+                    "wind REAL NOT NULL, " +
+                    "degrees REAL NOT NULL, " +
+                    " FOREIGN KEY (location_id) REFERENCES location (_id), " +
+                    " UNIQUE (date, location_id) ON CONFLICT REPLACE);");
+
+            // julianday() of 1970-01-01 is 2440587.5
+            db.execSQL("INSERT INTO weather (_id, location_id, date, short_desc, weather_id, " +
+                    "min, max, humidity, pressure, wind, degrees) " +
+                    "SELECT _id, location_id, " +
+                    "CAST(julianday(substr(date, 1, 4) || '-' || substr(date, 5, 2) || '-' || " +
+                    "substr(date, 7, 2)) - 2440587.5 AS INTEGER), " +
+                    "short_desc, weather_id, min, max, humidity, pressure, wind, degrees " +
+                    "FROM weather_v1");
+
+            db.execSQL("DROP TABLE weather_v1");
+        }
+    }
+
+    /**
+     * Adds an index with the location first, for the queries that filter by location and then
+     * by a range of dates.
+     */
+    static class WeatherLocationDateIndex extends Migration {
+
+        WeatherLocationDateIndex() {
+            super(2);
+        }
+
+        @Override
+        public void migrate(SQLiteDatabase db) {
+            db.execSQL("CREATE INDEX IF NOT EXISTS weather_location_date " +
+                    "ON weather (location_id, date);");
+        }
+    }
+
+    /**
+     * Adds what the retention of each location needs: when it was last viewed, and how many
+     * days of history to keep.  Existing locations count as viewed now, so none of them is
+     * evicted right after the upgrade.
+     */
+    static class LocationRetention extends Migration {
+
+        LocationRetention() {
+            super(3);
+        }
+
+        @Override
+        public void migrate(SQLiteDatabase db) {
+            db.execSQL("ALTER TABLE location ADD COLUMN last_viewed INTEGER NOT NULL DEFAULT 0");
+            db.execSQL("ALTER TABLE location ADD COLUMN history_days INTEGER NOT NULL DEFAULT 0");
+            db.execSQL("UPDATE location SET last_viewed = " + System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Adds the OpenWeatherMap id of each city.  It isn't known for the existing locations
+     * until their next sync, which fetches them by their setting as before and stores the id.
+     */
+    static class LocationCityId extends Migration {
+
+        LocationCityId() {
+            super(4);
+        }
+
+        @Override
+        public void migrate(SQLiteDatabase db) {
+            db.execSQL("ALTER TABLE location ADD COLUMN city_id INTEGER NOT NULL DEFAULT 0");
+        }
+    }
+
+    /**
+     * Adds when the forecast of each location was last fetched, and until when it is fresh.
+     * Existing locations count as stale, so the next sync revalidates them; their validators
+     * make that a 304 where nothing changed.
+     */
+    static class LocationFreshness extends Migration {
+
+        LocationFreshness() {
+            super(5);
+        }
+
+        @Override
+        public void migrate(SQLiteDatabase db) {
+            db.execSQL("ALTER TABLE location ADD COLUMN last_fetched INTEGER NOT NULL DEFAULT 0");
+            db.execSQL("ALTER TABLE location ADD COLUMN expires_at INTEGER NOT NULL DEFAULT 0");
+        }
+    }
+}
@@ -16,14 +16,32 @@
 package com.example.android.sunshine.data;
 
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentUris;
 import android.content.ContentValues;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
+import android.content.res.Resources;
 import android.database.Cursor;
 import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteQueryBuilder;
 import android.net.Uri;
+import android.os.AsyncTask;
+import android.os.Bundle;
+
+import com.example.android.sunshine.R;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class WeatherProvider extends ContentProvider {
 
@@ -36,6 +54,29 @@ public class WeatherProvider extends ContentProvider {
     private static final UriMatcher uriMatcher = buildUriMatcher();
     private WeatherDbHelper weatherDbHelper;
 
+    // Results of earlier queries, or null if the cache is turned off
+    private QueryCache queryCache;
+
+    // The compiled statements of the applyBatch running on the current thread, if any
+    private final ThreadLocal<BatchStatements> batchStatements = new ThreadLocal<BatchStatements>();
+
+    // The stored weather the applyBatch running on the current thread compares its inserts to
+    private final ThreadLocal<StoredWeatherRows> storedWeatherRows =
+            new ThreadLocal<StoredWeatherRows>();
+
+    // How many times stored weather was read to compare new rows against
+    private final AtomicLong comparisonQueryCount = new AtomicLong();
+
+    // The changes made so far by the applyBatch running on the current thread, if any
+    private final ThreadLocal<PendingNotifications> pendingNotifications =
+            new ThreadLocal<PendingNotifications>();
+
+    private static class PendingNotifications {
+        final Set<Uri> uris = new LinkedHashSet<Uri>();
+        boolean locationsInvalidated;
+        final WeatherChangeSet weather = new WeatherChangeSet();
+    }
+
     private static final SQLiteQueryBuilder weatherByLocationSettingQueryBuilder;
 
     static {
@@ -49,15 +90,28 @@ public class WeatherProvider extends ContentProvider {
                         "." + WeatherContract.LocationEntry._ID);
     }
 
+    // Location columns no weather query shows, kept for the retention and the sync
+    private static final Set<String> VIEW_BOOKKEEPING_COLUMNS = new HashSet<String>(Arrays.asList(
+            WeatherContract.LocationEntry.COLUMN_LAST_VIEWED,
+            WeatherContract.LocationEntry.COLUMN_CITY_ID));
+
+    // Those and when the sync last fetched each forecast and until when it's fresh, which
+    // only the list of that location's weather shows
+    private static final Set<String> BOOKKEEPING_COLUMNS = new HashSet<String>(Arrays.asList(
+            WeatherContract.LocationEntry.COLUMN_LAST_VIEWED,
+            WeatherContract.LocationEntry.COLUMN_CITY_ID,
+            WeatherContract.LocationEntry.COLUMN_LAST_FETCHED,
+            WeatherContract.LocationEntry.COLUMN_EXPIRES_AT));
+
     private static final String locationSettingSelection =
             WeatherContract.LocationEntry.TABLE_NAME +
                     "." + WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING + " = ? ";
 
     private static final String locationSettingWithStartDateSelection =
-            locationSettingSelection + " AND " + WeatherContract.WeatherEntry.COLUMN_DATETEXT + " >= ?";
+            locationSettingSelection + " AND " + WeatherContract.WeatherEntry.COLUMN_DATE + " >= ?";
 
     private static final String locationSettingWithDaySelection =
-            locationSettingSelection + " AND " + WeatherContract.WeatherEntry.COLUMN_DATETEXT + " = ?";
+            locationSettingSelection + " AND " + WeatherContract.WeatherEntry.COLUMN_DATE + " = ?";
 
     private Cursor getWeatherByLocationSetting(Uri uri, String[] projection, String sortOrder) {
         String locationSetting = WeatherContract.WeatherEntry.getLocationSettingFromUri(uri);
@@ -71,7 +125,8 @@ public class WeatherProvider extends ContentProvider {
             selectionArgs = new String[]{locationSetting};
         } else {
             selection = locationSettingWithStartDateSelection;
-            selectionArgs = new String[]{locationSetting, startDate};
+            selectionArgs = new String[]{locationSetting,
+                    Long.toString(WeatherContract.getDbDate(startDate))};
         }
 
         return weatherByLocationSettingQueryBuilder.query(weatherDbHelper.getReadableDatabase(),
@@ -91,13 +146,51 @@ public class WeatherProvider extends ContentProvider {
         return weatherByLocationSettingQueryBuilder.query(weatherDbHelper.getReadableDatabase(),
                 projection,
                 locationSettingWithDaySelection,
-                new String[]{locationSetting, day},
+                new String[]{locationSetting, Long.toString(WeatherContract.getDbDate(day))},
                 null,
                 null,
                 sortOrder
         );
     }
 
+    /**
+     * Builds the SQL that {@link #query} runs for a uri, without running it, so the query plan
+     * of every route can be checked.  Selection arguments are left as "?".
+     */
+    public static String buildQuery(Uri uri, String[] projection, String selection,
+                                    String sortOrder) {
+        SQLiteQueryBuilder queryBuilder = new SQLiteQueryBuilder();
+
+        switch (uriMatcher.match(uri)) {
+            case WEATHER_WITH_LOCATION_AND_DATE:
+                return weatherByLocationSettingQueryBuilder.buildQuery(projection,
+                        locationSettingWithDaySelection, null, null, sortOrder, null);
+
+            case WEATHER_WITH_LOCATION:
+                return weatherByLocationSettingQueryBuilder.buildQuery(projection,
+                        WeatherContract.WeatherEntry.getStartDateFromUri(uri) == null
+                                ? locationSettingSelection
+                                : locationSettingWithStartDateSelection,
+                        null, null, sortOrder, null);
+
+            case WEATHER:
+                queryBuilder.setTables(WeatherContract.WeatherEntry.TABLE_NAME);
+                return queryBuilder.buildQuery(projection, selection, null, null, sortOrder, null);
+
+            case LOCATION_ID:
+                queryBuilder.setTables(WeatherContract.LocationEntry.TABLE_NAME);
+                return queryBuilder.buildQuery(projection, WeatherContract.LocationEntry._ID + " = ?",
+                        null, null, sortOrder, null);
+
+            case LOCATION:
+                queryBuilder.setTables(WeatherContract.LocationEntry.TABLE_NAME);
+                return queryBuilder.buildQuery(projection, selection, null, null, sortOrder, null);
+
+            default:
+                throw new UnsupportedOperationException("Unknown uri: " + uri);
+        }
+    }
+
     private static UriMatcher buildUriMatcher() {
 
         final UriMatcher uriMatcher = new UriMatcher(UriMatcher.NO_MATCH);
@@ -116,16 +209,62 @@ public class WeatherProvider extends ContentProvider {
     @Override
     public boolean onCreate() {
         weatherDbHelper = new WeatherDbHelper(getContext());
+
+        Resources resources = getContext().getResources();
+        if (resources.getBoolean(R.bool.query_cache_enabled)) {
+            queryCache = new QueryCache(resources.getInteger(R.integer.query_cache_max_bytes));
+        }
+
+        // Warm the location IDs off the main thread, so the first sync doesn't have to look
+        // its location up.
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                warmLocationIdCache();
+            }
+        });
         return true;
     }
 
+    private void warmLocationIdCache() {
+        int generation = LocationIdCache.getGeneration();
+        Cursor cursor = weatherDbHelper.getReadableDatabase().query(
+                WeatherContract.LocationEntry.TABLE_NAME,
+                new String[] { WeatherContract.LocationEntry._ID,
+                        WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING },
+                null, null, null, null, null,
+                Integer.toString(LocationIdCache.MAX_ENTRIES));
+        try {
+            while (cursor.moveToNext()) {
+                LocationIdCache.put(cursor.getString(1), cursor.getLong(0), generation);
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
     @Override
     public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs,
                         String sortOrder) {
+        final int match = uriMatcher.match(uri);
+
+        String cacheKey = null;
+        int cacheGeneration = 0;
+        if (queryCache != null) {
+            cacheKey = QueryCache.buildKey(match, uri.toString(), projection, selection,
+                    selectionArgs, sortOrder);
+            Cursor cachedCursor = queryCache.get(cacheKey);
+            if (cachedCursor != null) {
+                cachedCursor.setNotificationUri(getContext().getContentResolver(), uri);
+                return cachedCursor;
+            }
+            cacheGeneration = queryCache.getGeneration();
+        }
+
         // Here's the switch statement that, given a URI, will determine what kind of request it is,
         // and query the database accordingly.
         Cursor retCursor;
-        switch (uriMatcher.match(uri)) {
+        switch (match) {
             // "weather/*/*"
             case WEATHER_WITH_LOCATION_AND_DATE:
             {
@@ -186,6 +325,16 @@ public class WeatherProvider extends ContentProvider {
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
         }
 
+        if (cacheKey != null) {
+            // Results for one location only change with that location's weather
+            String locationSetting = match == WEATHER_WITH_LOCATION ||
+                    match == WEATHER_WITH_LOCATION_AND_DATE
+                    ? WeatherContract.WeatherEntry.getLocationSettingFromUri(uri)
+                    : null;
+            retCursor = queryCache.put(cacheKey, locationSetting,
+                    match == LOCATION || match == LOCATION_ID, retCursor, cacheGeneration);
+        }
+
         retCursor.setNotificationUri(getContext().getContentResolver(), uri);
 
         return retCursor;
@@ -223,17 +372,52 @@ public class WeatherProvider extends ContentProvider {
 
         switch (match) {
             case WEATHER: {
-                long id = db.insert(WeatherContract.WeatherEntry.TABLE_NAME, null, contentValues);
-                if (id > 0) {
-                    returnUri = WeatherContract.WeatherEntry.buildWeatherUri(id);
+                BatchStatements statements = batchStatements.get();
+                boolean ownStatements = statements == null;
+                if (ownStatements) {
+                    statements = new BatchStatements(db);
+                }
+
+                // Like bulkInsert, an unchanged day is left alone and observers aren't told.
+                // Within a batch, the day is compared to the location's rows read for the batch.
+                long[] rowIds = new long[1];
+                WeatherChangeSet changes = new WeatherChangeSet();
+                StoredWeatherRows storedRows = storedWeatherRows.get();
+                Long locationId = contentValues.getAsLong(
+                        WeatherContract.WeatherEntry.COLUMN_LOC_KEY);
+                Long date = contentValues.getAsLong(WeatherContract.WeatherEntry.COLUMN_DATE);
+                try {
+                    if (storedRows != null && locationId != null && date != null &&
+                            storedRows.covers(locationId, date)) {
+                        upsertRow(statements, storedRows.moveTo(locationId, date),
+                                contentValues, locationId, rowIds, 0, changes);
+                        storedRows.written(locationId, date);
+                    } else {
+                        upsertWeather(db, statements, new ContentValues[] { contentValues },
+                                rowIds, changes);
+                    }
+                } finally {
+                    if (ownStatements) {
+                        statements.close();
+                    }
+                }
+
+                if (rowIds[0] > 0) {
+                    returnUri = WeatherContract.WeatherEntry.buildWeatherUri(rowIds[0]);
                 } else {
                     throw new SQLException("Failed to insert row into " + uri);
                 }
-                break;
+                notifyWeatherChange(db, changes);
+                return returnUri;
             }
 
             case LOCATION: {
-                long id = db.insert(WeatherContract.LocationEntry.TABLE_NAME, null, contentValues);
+                BatchStatements statements = batchStatements.get();
+                long id = statements != null
+                        ? statements.insertLocation(contentValues)
+                        : db.insert(WeatherContract.LocationEntry.TABLE_NAME, null, contentValues);
+                LocationIdCache.remove(contentValues.getAsString(
+                        WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING));
                 if (id > 0) {
                     returnUri = WeatherContract.LocationEntry.buildLocationUri(id);
                 } else {
@@ -247,7 +431,7 @@ public class WeatherProvider extends ContentProvider {
         }
 
         // notify any registered observers of this change
-        getContext().getContentResolver().notifyChange(uri, null);
+        notifyChange(uri);
 
         return returnUri;
     }
@@ -256,14 +440,29 @@ public class WeatherProvider extends ContentProvider {
     public int delete(Uri uri, String selection, String[] selectionArgs) {
 
         final String tableName = getTableName(uri);
+        SQLiteDatabase db = weatherDbHelper.getWritableDatabase();
+        forgetStoredWeatherRows();
+
+        if (WeatherContract.WeatherEntry.TABLE_NAME.equals(tableName)) {
+            // Find out whose weather is about to go, so only their observers are notified
+            WeatherChangeSet changes = findWeatherChanges(db, selection, selectionArgs);
+            int affectedRows = db.delete(tableName, selection, selectionArgs);
+            if (selection == null || affectedRows > 0) {
+                notifyWeatherChange(db, changes);
+            }
+            return affectedRows;
+        }
 
         // do the actual deletion
-        int affectedRows = weatherDbHelper.getWritableDatabase()
-                .delete(tableName, selection, selectionArgs);
+        int affectedRows = db.delete(tableName, selection, selectionArgs);
+
+        if (affectedRows > 0) {
+            LocationIdCache.clear();
+        }
 
         // notify any registered observers of this change
         if (selection == null || affectedRows > 0) {
-            getContext().getContentResolver().notifyChange(uri, null);
+            notifyChange(uri);
         }
 
         return affectedRows;
@@ -273,49 +472,514 @@ public class WeatherProvider extends ContentProvider {
     public int update(Uri uri, ContentValues contentValues, String selection, String[] selectionArgs) {
 
         final String tableName = getTableName(uri);
+        SQLiteDatabase db = weatherDbHelper.getWritableDatabase();
+
+        if (WeatherContract.WeatherEntry.TABLE_NAME.equals(tableName)) {
+            forgetStoredWeatherRows();
+            WeatherChangeSet changes = findWeatherChanges(db, selection, selectionArgs);
+            if (contentValues.containsKey(WeatherContract.WeatherEntry.COLUMN_LOC_KEY) ||
+                    contentValues.containsKey(WeatherContract.WeatherEntry.COLUMN_DATE)) {
+                // Rows are moving to a location or date we can't tell in advance
+                changes.addUnscoped();
+            }
+            int affectedRows = db.update(tableName, contentValues, selection, selectionArgs);
+            if (affectedRows > 0) {
+                notifyWeatherChange(db, changes);
+            }
+            return affectedRows;
+        }
+
+        Set<String> columns = contentValues.keySet();
+        if (VIEW_BOOKKEEPING_COLUMNS.containsAll(columns)) {
+            // Only bookkeeping for the retention or the sync; nobody shows it, so nobody
+            // needs to know.  Cached location queries would still read the old value, but no
+            // weather query reads it.
+            int affectedRows = db.update(tableName, contentValues, selection, selectionArgs);
+            if (affectedRows > 0) {
+                invalidateLocationQueries();
+            }
+            return affectedRows;
+        }
+
+        // Found first, since the selection may not match the rows once they're updated
+        Map<Long, String> locations = findLocations(db, selection, selectionArgs);
 
         // do the actual update
-        int affectedRows = weatherDbHelper.getWritableDatabase()
-                .update(tableName, contentValues, selection, selectionArgs);
+        int affectedRows = db.update(tableName, contentValues, selection, selectionArgs);
+        if (affectedRows == 0) {
+            return 0;
+        }
 
-        // notify any registered observers of this change
-        if (affectedRows > 0) {
-            getContext().getContentResolver().notifyChange(uri, null);
+        String newSetting = contentValues.getAsString(
+                WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING);
+        if (newSetting != null) {
+            // Location IDs are cached by setting
+            LocationIdCache.clear();
+            notifyChange(WeatherContract.WeatherEntry.buildWeatherLocation(newSetting));
+        }
+
+        // The weather of a location is read joined with it, so its observers are told.  When
+        // only the sync's bookkeeping changed, the list still shows the forecast's age, but
+        // nobody watching the locations needs to know.
+        boolean bookkeeping = BOOKKEEPING_COLUMNS.containsAll(columns);
+        for (Map.Entry<Long, String> location : locations.entrySet()) {
+            notifyChange(WeatherContract.WeatherEntry.buildWeatherLocation(location.getValue()));
+            if (!bookkeeping) {
+                notifyChange(WeatherContract.LocationEntry.buildLocationUri(location.getKey()));
+            }
         }
 
         return affectedRows;
     }
 
+    /**
+     * @return the settings of the locations that match the selection, by their _ID.
+     */
+    private static Map<Long, String> findLocations(SQLiteDatabase db, String selection,
+                                                   String[] selectionArgs) {
+        Map<Long, String> locations = new HashMap<Long, String>();
+        Cursor cursor = db.query(WeatherContract.LocationEntry.TABLE_NAME,
+                new String[] { WeatherContract.LocationEntry._ID,
+                        WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING },
+                selection, selectionArgs, null, null, null);
+        try {
+            while (cursor.moveToNext()) {
+                locations.put(cursor.getLong(0), cursor.getString(1));
+            }
+        } finally {
+            cursor.close();
+        }
+        return locations;
+    }
+
     @Override
     public int bulkInsert(Uri uri, ContentValues[] values) {
         SQLiteDatabase db = weatherDbHelper.getWritableDatabase();
 
         final int match = uriMatcher.match(uri);
 
+        int returnCount = 0;
+
         switch (match) {
-            case WEATHER:
+            case WEATHER: {
+                BatchStatements statements = new BatchStatements(db);
+                WeatherChangeSet changes = new WeatherChangeSet();
+                db.beginTransaction();
+                try {
+                    returnCount = upsertWeather(db, statements, values, null, changes);
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                    statements.close();
+                }
+
+                // A sync that brought nothing new shouldn't wake up any loader, and one that
+                // did only those showing the locations it changed
+                notifyWeatherChange(db, changes);
+                return returnCount;
+            }
 
+            case LOCATION: {
+                BatchStatements statements = new BatchStatements(db);
                 db.beginTransaction();
-                int returnCount = 0;
                 try {
                     for (ContentValues value : values) {
-                        long id = db.insert(WeatherContract.WeatherEntry.TABLE_NAME, null, value);
-                        if (-1 != id) {
+                        if (-1 != statements.insertLocation(value)) {
                             ++returnCount;
                         }
+                        LocationIdCache.remove(value.getAsString(
+                                WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING));
                     }
                     db.setTransactionSuccessful();
                 } finally {
                     db.endTransaction();
+                    statements.close();
                 }
-
-                getContext().getContentResolver().notifyChange(uri, null);
-
-                return returnCount;
+                break;
+            }
 
             default:
                 return super.bulkInsert(uri, values);
         }
+
+        if (returnCount > 0) {
+            notifyChange(uri);
+        }
+
+        return returnCount;
+    }
+
+    @Override
+    public Bundle call(String method, String arg, Bundle extras) {
+        if (WeatherContract.METHOD_RECLAIM_SPACE.equals(method)) {
+            weatherDbHelper.reclaimSpace();
+            return null;
+        }
+        if (WeatherContract.METHOD_NOTIFY_DISPLAY_CHANGE.equals(method)) {
+            // The cached results are still right, only the observers need to know
+            sendNotification(Uri.parse(arg));
+            return null;
+        }
+        return super.call(method, arg, extras);
+    }
+
+    /**
+     * Applies the whole batch in one transaction, so it costs a single commit and other
+     * connections never see it half done.  Inserts in the batch share compiled statements, and
+     * observers are notified once per changed URI after the commit, instead of once per
+     * operation.  If any operation fails, nothing is written and nobody is notified.
+     */
+    @Override
+    public ContentProviderResult[] applyBatch(ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+        SQLiteDatabase db = weatherDbHelper.getWritableDatabase();
+        BatchStatements statements = new BatchStatements(db);
+        StoredWeatherRows storedRows = new StoredWeatherRows(db);
+        PendingNotifications pending = new PendingNotifications();
+        batchStatements.set(statements);
+        storedWeatherRows.set(storedRows);
+        pendingNotifications.set(pending);
+
+        ContentProviderResult[] results;
+        db.beginTransaction();
+        try {
+            results = super.applyBatch(operations);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            batchStatements.remove();
+            storedWeatherRows.remove();
+            pendingNotifications.remove();
+            statements.close();
+            comparisonQueryCount.addAndGet(storedRows.getQueryCount());
+            storedRows.close();
+        }
+
+        if (pending.locationsInvalidated && queryCache != null) {
+            queryCache.invalidateLocations();
+        }
+        for (Uri uri : pending.uris) {
+            // A lookup may have cached a location while the batch was still uncommitted
+            if (uriMatcher.match(uri) == LOCATION) {
+                LocationIdCache.clear();
+            }
+            notifyChange(uri);
+        }
+        notifyWeatherChange(db, pending.weather);
+        return results;
+    }
+
+    /**
+     * Notifies the observers of the given URI, or, inside applyBatch, remembers to do so once
+     * the batch is committed.
+     */
+    private void notifyChange(Uri uri) {
+        PendingNotifications pending = pendingNotifications.get();
+        if (pending != null) {
+            pending.uris.add(uri);
+        } else {
+            invalidateQueryCache(uri);
+            sendNotification(uri);
+        }
+    }
+
+    /**
+     * Notifies the observers of the given URI right away.  Every notification the provider
+     * sends goes through here, so this is where they're counted.
+     */
+    private void sendNotification(Uri uri) {
+        getContext().getContentResolver().notifyChange(uri, null);
+        NotificationStats.recordNotification(uri);
+    }
+
+    /**
+     * Drops the cached results read from the location table alone without notifying anyone,
+     * or, inside applyBatch, remembers to do so once the batch is committed.
+     */
+    private void invalidateLocationQueries() {
+        PendingNotifications pending = pendingNotifications.get();
+        if (pending != null) {
+            pending.locationsInvalidated = true;
+        } else if (queryCache != null) {
+            queryCache.invalidateLocations();
+        }
+    }
+
+    /**
+     * Drops the cached results that the change behind a notification of the given URI could
+     * have affected.
+     */
+    private void invalidateQueryCache(Uri uri) {
+        if (queryCache == null) {
+            return;
+        }
+
+        List<String> segments = uri.getPathSegments();
+        if (segments.size() >= 2 && WeatherContract.PATH_WEATHER.equals(segments.get(0))) {
+            queryCache.invalidate(segments.get(1));
+        } else if (uriMatcher.match(uri) == LOCATION_ID) {
+            // An update of a location tells the observers of its weather separately
+            queryCache.invalidateLocations();
+        } else {
+            queryCache.invalidateAll();
+        }
+    }
+
+    /**
+     * Forgets the stored weather read by the applyBatch running on the current thread, if any,
+     * since a delete or an update may have changed it.
+     */
+    private void forgetStoredWeatherRows() {
+        StoredWeatherRows storedRows = storedWeatherRows.get();
+        if (storedRows != null) {
+            storedRows.clear();
+        }
+    }
+
+    /**
+     * @return how many times stored weather was read to compare new rows against, which is
+     * once per location for a bulk insert or a batch.
+     */
+    public long getComparisonQueryCount() {
+        return comparisonQueryCount.get();
+    }
+
+    /**
+     * @return the cache of query results, or null if it is turned off.
+     */
+    public QueryCache getQueryCache() {
+        return queryCache;
+    }
+
+    /**
+     * Notifies the observers of the locations and dates that changed, or, inside applyBatch,
+     * adds the changes to those of the batch.
+     */
+    private void notifyWeatherChange(SQLiteDatabase db, WeatherChangeSet changes) {
+        PendingNotifications pending = pendingNotifications.get();
+        if (pending != null) {
+            pending.weather.addAll(changes);
+            return;
+        }
+        if (changes.isEmpty()) {
+            return;
+        }
+
+        Map<Long, String> locationSettings = new HashMap<Long, String>();
+        if (!changes.isUnscoped()) {
+            StringBuilder ids = new StringBuilder();
+            for (long locationId : changes.getLocationIds()) {
+                ids.append(ids.length() > 0 ? "," : "").append(locationId);
+            }
+
+            Cursor cursor = db.query(WeatherContract.LocationEntry.TABLE_NAME,
+                    new String[] { WeatherContract.LocationEntry._ID,
+                            WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING },
+                    WeatherContract.LocationEntry._ID + " IN (" + ids + ")",
+                    null, null, null, null);
+            try {
+                while (cursor.moveToNext()) {
+                    locationSettings.put(cursor.getLong(0), cursor.getString(1));
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+
+        for (Uri uri : changes.getUris(locationSettings)) {
+            notifyChange(uri);
+        }
+    }
+
+    /**
+     * @return the locations and dates of the weather rows that match the selection.
+     */
+    private static WeatherChangeSet findWeatherChanges(SQLiteDatabase db, String selection,
+                                                       String[] selectionArgs) {
+        WeatherChangeSet changes = new WeatherChangeSet();
+        if (selection == null) {
+            // Every row; no point in reading them all
+            changes.addUnscoped();
+            return changes;
+        }
+
+        Cursor cursor = db.query(WeatherContract.WeatherEntry.TABLE_NAME,
+                new String[] { WeatherContract.WeatherEntry.COLUMN_LOC_KEY,
+                        WeatherContract.WeatherEntry.COLUMN_DATE },
+                selection, selectionArgs, null, null, null);
+        try {
+            while (cursor.moveToNext()) {
+                changes.add(cursor.getLong(0), cursor.getLong(1));
+            }
+        } finally {
+            cursor.close();
+        }
+        return changes;
+    }
+
+    /**
+     * Writes only the weather rows that differ from what is stored.  The stored rows of each
+     * location are read once for the range of dates being written; unchanged days are skipped
+     * and changed days are updated in place, so they keep their _ID.
+     *
+     * @param rowIds if not null, receives the _ID of the row holding each of the values, or -1
+     *               where the row couldn't be written
+     * @param changes receives the location and date of every row inserted or updated
+     * @return the number of rows inserted or updated
+     */
+    private int upsertWeather(SQLiteDatabase db, BatchStatements statements,
+                              ContentValues[] values, long[] rowIds, WeatherChangeSet changes) {
+        // Group the incoming rows by location, so the stored rows can be read in one query each
+        Map<Long, List<Integer>> indicesByLocation = new HashMap<Long, List<Integer>>();
+        int returnCount = 0;
+
+        for (int i = 0; i < values.length; i++) {
+            ContentValues value = values[i];
+            Long locationId = value.getAsLong(WeatherContract.WeatherEntry.COLUMN_LOC_KEY);
+            Long date = value.getAsLong(WeatherContract.WeatherEntry.COLUMN_DATE);
+
+            if (locationId == null || date == null) {
+                // Nothing to compare against; let the insert fail or succeed on its own
+                long id = statements.insertWeather(value);
+                if (-1 != id) {
+                    ++returnCount;
+                    changes.addUnscoped();
+                }
+                if (rowIds != null) {
+                    rowIds[i] = id;
+                }
+                continue;
+            }
+
+            List<Integer> locationIndices = indicesByLocation.get(locationId);
+            if (locationIndices == null) {
+                locationIndices = new ArrayList<Integer>();
+                indicesByLocation.put(locationId, locationIndices);
+            }
+            locationIndices.add(i);
+        }
+
+        for (Map.Entry<Long, List<Integer>> entry : indicesByLocation.entrySet()) {
+            returnCount += upsertWeatherForLocation(db, statements, entry.getKey(),
+                    values, entry.getValue(), rowIds, changes);
+        }
+
+        return returnCount;
+    }
+
+    private int upsertWeatherForLocation(SQLiteDatabase db, BatchStatements statements,
+                                         long locationId, ContentValues[] values,
+                                         List<Integer> indices, long[] rowIds,
+                                         WeatherChangeSet changes) {
+        long startDate = Long.MAX_VALUE;
+        long endDate = Long.MIN_VALUE;
+        for (int i : indices) {
+            long date = values[i].getAsLong(WeatherContract.WeatherEntry.COLUMN_DATE);
+            startDate = Math.min(startDate, date);
+            endDate = Math.max(endDate, date);
+        }
+
+        comparisonQueryCount.incrementAndGet();
+        Cursor stored = db.query(WeatherContract.WeatherEntry.TABLE_NAME,
+                null,
+                WeatherContract.WeatherEntry.COLUMN_LOC_KEY + " = ? AND " +
+                        WeatherContract.WeatherEntry.COLUMN_DATE + " BETWEEN ? AND ?",
+                new String[] { Long.toString(locationId),
+                        Long.toString(startDate), Long.toString(endDate) },
+                null,
+                null,
+                null);
+
+        int returnCount = 0;
+        try {
+            int dateColumn = stored.getColumnIndex(WeatherContract.WeatherEntry.COLUMN_DATE);
+
+            Map<Long, Integer> positionByDate = new HashMap<Long, Integer>();
+            while (stored.moveToNext()) {
+                positionByDate.put(stored.getLong(dateColumn), stored.getPosition());
+            }
+
+            for (int i : indices) {
+                ContentValues value = values[i];
+                Integer position = positionByDate.get(
+                        value.getAsLong(WeatherContract.WeatherEntry.COLUMN_DATE));
+                Cursor storedRow = null;
+                if (position != null) {
+                    stored.moveToPosition(position);
+                    storedRow = stored;
+                }
+                if (upsertRow(statements, storedRow, value, locationId, rowIds, i, changes)) {
+                    ++returnCount;
+                }
+            }
+        } finally {
+            stored.close();
+        }
+
+        return returnCount;
+    }
+
+    /**
+     * Inserts a weather row, or updates the stored row of the same location and date if it
+     * differs, leaving it alone if it doesn't.
+     *
+     * @param stored the cursor moved to the stored row, or null if there is none
+     * @return whether the row was inserted or updated
+     */
+    private static boolean upsertRow(BatchStatements statements, Cursor stored,
+                                     ContentValues value, long locationId, long[] rowIds,
+                                     int index, WeatherChangeSet changes) {
+        long date = value.getAsLong(WeatherContract.WeatherEntry.COLUMN_DATE);
+        boolean written;
+        long id;
+        if (stored == null) {
+            id = statements.insertWeather(value);
+            written = -1 != id;
+        } else {
+            id = stored.getLong(stored.getColumnIndex(WeatherContract.WeatherEntry._ID));
+            written = !rowMatches(stored, value) && statements.updateWeather(id, value) > 0;
+        }
+
+        if (written) {
+            changes.add(locationId, date);
+        }
+        if (rowIds != null) {
+            rowIds[index] = id;
+        }
+        return written;
+    }
+
+    /**
+     * Compares the current row of the cursor with the given values.  Numbers are compared by
+     * value, since that's how SQLite stores them, and everything else by its string form.
+     */
+    private static boolean rowMatches(Cursor cursor, ContentValues values) {
+        for (Map.Entry<String, Object> entry : values.valueSet()) {
+            int column = cursor.getColumnIndex(entry.getKey());
+            if (column == -1) {
+                return false;
+            }
+
+            Object value = entry.getValue();
+            if (value == null) {
+                if (!cursor.isNull(column)) {
+                    return false;
+                }
+            } else if (cursor.isNull(column)) {
+                return false;
+            } else if (value instanceof Double || value instanceof Float) {
+                if (cursor.getDouble(column) != ((Number) value).doubleValue()) {
+                    return false;
+                }
+            } else if (value instanceof Number) {
+                if (cursor.getLong(column) != ((Number) value).longValue()) {
+                    return false;
+                }
+            } else if (!value.toString().equals(cursor.getString(column))) {
+                return false;
+            }
+        }
+        return true;
     }
 
     private String getTableName(Uri uri) {
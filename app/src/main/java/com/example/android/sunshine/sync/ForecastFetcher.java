@@ -0,0 +1,239 @@
+package com.example.android.sunshine.sync;
+
+import android.content.ContentValues;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.example.android.sunshine.data.DateCodec;
+import com.example.android.sunshine.data.WeatherContract;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Downloads and parses the forecast of one location at a time, from any number of threads.
+ * No more than a fixed number of requests are open to the same host at once; the others wait
+ * for a permit before connecting.
+ */
+public class ForecastFetcher {
+
+    private static final String LOG_TAG = ForecastFetcher.class.getSimpleName();
+
+    public static final String API_BASE_URL = "http://api.openweathermap.org/data/2.5/";
+
+    // Possible parameters are avaiable at OWM's forecast API page, at
+    // http://openweathermap.org/API#forecast
+    private static final String FORECAST_PATH = "forecast/daily";
+
+    private static final String QUERY_PARAM = "q";
+    private static final String FORMAT_PARAM = "mode";
+    private static final String UNITS_PARAM = "units";
+    private static final String DAYS_PARAM = "cnt";
+
+    private static final String FORMAT = "json";
+    private static final String UNITS = "metric";
+    private static final int NUM_DAYS = 14;
+
+    /**
+     * The outcome of fetching one location.
+     */
+    public static class Result {
+        /** The forecast was downloaded and parsed; its rows are in {@link #values}. */
+        public static final int STATUS_OK = 0;
+        /** The server answered 304, so what is stored is still current. */
+        public static final int STATUS_NOT_MODIFIED = 1;
+        /** The request failed, or the response ended early. */
+        public static final int STATUS_IO_ERROR = 2;
+        /** The response wasn't shaped like a forecast. */
+        public static final int STATUS_PARSE_ERROR = 3;
+        /** The response had no city or no days. */
+        public static final int STATUS_EMPTY = 4;
+
+        public final String locationSetting;
+        public int status;
+        public long latencyMillis;
+
+        public long cityId;
+        public String cityName;
+        public double cityLatitude;
+        public double cityLongitude;
+        /** The weather rows, without their location key. */
+        public final List<ContentValues> values = new ArrayList<ContentValues>(NUM_DAYS);
+
+        // Validators of the response, to store once its rows have been inserted
+        public String etag;
+        public String lastModified;
+
+        Result(String locationSetting) {
+            this.locationSetting = locationSetting;
+        }
+    }
+
+    private final ForecastValidatorCache mValidatorCache;
+    private final String mApiUrl;
+    private final int mMaxRequestsPerHost;
+    private final ConcurrentMap<String, Semaphore> mHostPermits =
+            new ConcurrentHashMap<String, Semaphore>();
+
+    /**
+     * @param apiUrl the root of the API, {@link #API_BASE_URL} but in tests
+     */
+    public ForecastFetcher(ForecastValidatorCache validatorCache, String apiUrl,
+                           int maxRequestsPerHost) {
+        mValidatorCache = validatorCache;
+        mApiUrl = apiUrl;
+        mMaxRequestsPerHost = maxRequestsPerHost;
+    }
+
+    public Result fetch(String locationQuery) {
+        Result result = new Result(locationQuery);
+        long start = SystemClock.elapsedRealtime();
+
+        Uri builtUri = Uri.parse(mApiUrl).buildUpon()
+                .appendEncodedPath(FORECAST_PATH)
+                .appendQueryParameter(QUERY_PARAM, locationQuery)
+                .appendQueryParameter(FORMAT_PARAM, FORMAT)
+                .appendQueryParameter(UNITS_PARAM, UNITS)
+                .appendQueryParameter(DAYS_PARAM, Integer.toString(NUM_DAYS))
+                .build();
+
+        Semaphore permits = getPermits(builtUri.getAuthority());
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.status = Result.STATUS_IO_ERROR;
+            return result;
+        }
+
+        // These two need to be declared outside the try/catch
+        // so that they can be closed in the finally block.
+        HttpURLConnection urlConnection = null;
+        BufferedReader reader = null;
+
+        try {
+            URL url = new URL(builtUri.toString());
+
+            // Create the request to OpenWeatherMap, and open the connection
+            urlConnection = (HttpURLConnection) url.openConnection();
+            urlConnection.setRequestMethod("GET");
+            mValidatorCache.applyTo(urlConnection, locationQuery);
+            urlConnection.connect();
+
+            if (mValidatorCache.isNotModified(urlConnection)) {
+                // What we have stored is still current, so leave the database alone.
+                Log.v(LOG_TAG, "Forecast for " + locationQuery + " not modified");
+                result.status = Result.STATUS_NOT_MODIFIED;
+                return result;
+            }
+
+            result.etag = ForecastValidatorCache.getETag(urlConnection);
+            result.lastModified = ForecastValidatorCache.getLastModified(urlConnection);
+
+            // Parse the input stream as it arrives, without buffering the whole body
+            InputStream inputStream = urlConnection.getInputStream();
+            if (inputStream == null) {
+                // Nothing to do.
+                result.status = Result.STATUS_EMPTY;
+                return result;
+            }
+            reader = new BufferedReader(new InputStreamReader(inputStream));
+
+            new ForecastJsonParser(new Collector(result)).parse(reader);
+
+            result.status = result.cityName == null || result.values.isEmpty() ?
+                    Result.STATUS_EMPTY : Result.STATUS_OK;
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Error fetching " + locationQuery, e);
+            // If the code didn't successfully get the weather data, there's no point in
+            // storing whatever part of it was parsed.
+            result.values.clear();
+            result.status = Result.STATUS_IO_ERROR;
+        } catch (IllegalStateException e) {
+            // The response was valid JSON, but not shaped like a forecast.
+            Log.e(LOG_TAG, e.getLocalizedMessage(), e);
+            result.values.clear();
+            result.status = Result.STATUS_PARSE_ERROR;
+        } finally {
+            if (urlConnection != null) {
+                urlConnection.disconnect();
+            }
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (final IOException e) {
+                    Log.e(LOG_TAG, "Error closing stream", e);
+                }
+            }
+            permits.release();
+            result.latencyMillis = SystemClock.elapsedRealtime() - start;
+        }
+        return result;
+    }
+
+    private Semaphore getPermits(String host) {
+        Semaphore permits = mHostPermits.get(host);
+        if (permits == null) {
+            Semaphore created = new Semaphore(mMaxRequestsPerHost);
+            permits = mHostPermits.putIfAbsent(host, created);
+            if (permits == null) {
+                permits = created;
+            }
+        }
+        return permits;
+    }
+
+    /**
+     * Turns the days reported by the {@link ForecastJsonParser} into weather rows.  The location
+     * key is filled in once the city has been stored, since it may be read after the days.
+     */
+    private static class Collector implements ForecastJsonParser.Handler {
+
+        private final Result mResult;
+
+        Collector(Result result) {
+            mResult = result;
+        }
+
+        @Override
+        public void onCity(long cityId, String cityName, double latitude, double longitude) {
+            mResult.cityId = cityId;
+            mResult.cityName = cityName;
+            mResult.cityLatitude = latitude;
+            mResult.cityLongitude = longitude;
+        }
+
+        @Override
+        public void onDay(long dateTime, double pressure, int humidity, double windSpeed,
+                          double windDirection, double high, double low,
+                          String description, int weatherId) {
+            ContentValues weatherValues = new ContentValues();
+
+            // The date/time is returned as a long.  We need to convert that
+            // into something human-readable, since most people won't read "1400356800" as
+            // "this saturday".
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_DATE,
+                    DateCodec.getEpochDay(dateTime * 1000L));
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_HUMIDITY, humidity);
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_PRESSURE, pressure);
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_WIND_SPEED, windSpeed);
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_DEGREES, windDirection);
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP, high);
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_MIN_TEMP, low);
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_SHORT_DESC, description);
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID, weatherId);
+
+            mResult.values.add(weatherValues);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.android.sunshine.sync;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import com.example.android.sunshine.R;
+import com.example.android.sunshine.data.WeatherContract;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * When a stored forecast goes stale.  Each location records when its forecast was last
+ * fetched, or confirmed unchanged by a 304, and until when that counts as fresh, as picked by
+ * the {@link SyncScheduler}.  The list shows what is stored right away either way, along with
+ * its age; only stale locations are fetched again, in the background.
+ * <p/>
+ * Someone opening the app wants it fresher than the schedule may keep it, so for viewing a
+ * forecast also goes stale once it's older than the freshness window.
+ */
+public final class ForecastFreshness {
+
+    private ForecastFreshness() {
+    }
+
+    /**
+     * @return until when a forecast fetched at lastFetched and scheduled to expire at
+     * expiresAt is fresh enough to show without syncing.
+     */
+    public static long getViewingExpiresAt(Context context, long lastFetched, long expiresAt) {
+        return Math.min(expiresAt, lastFetched + TimeUnit.MINUTES.toMillis(
+                context.getResources().getInteger(R.integer.sync_freshness_minutes)));
+    }
+
+    /**
+     * @return whether a forecast fetched at lastFetched is still fresh at now.  One never
+     * fetched is stale, and so is one fetched after now, since the clock was set back.
+     */
+    public static boolean isFresh(long lastFetched, long expiresAt, long now) {
+        return lastFetched > 0 && now >= lastFetched && now < expiresAt;
+    }
+
+    /**
+     * @return whether the stored forecast of the location is fresh enough to show at now
+     * without syncing; false if the location isn't stored.
+     */
+    public static boolean isFresh(Context context, String locationSetting, long now) {
+        Cursor cursor = context.getContentResolver().query(
+                WeatherContract.LocationEntry.CONTENT_URI,
+                new String[] {
+                        WeatherContract.LocationEntry.COLUMN_LAST_FETCHED,
+                        WeatherContract.LocationEntry.COLUMN_EXPIRES_AT },
+                WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING + " = ?",
+                new String[] { locationSetting }, null);
+        if (cursor == null) {
+            return false;
+        }
+        try {
+            if (!cursor.moveToFirst()) {
+                return false;
+            }
+            long lastFetched = cursor.getLong(0);
+            return isFresh(lastFetched,
+                    getViewingExpiresAt(context, lastFetched, cursor.getLong(1)), now);
+        } finally {
+            cursor.close();
+        }
+    }
+}
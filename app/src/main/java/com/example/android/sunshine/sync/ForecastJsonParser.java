@@ -0,0 +1,230 @@
+package com.example.android.sunshine.sync;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Streaming parser for the OpenWeatherMap daily forecast response.
+ * <p/>
+ * Instead of reading the whole body into a String and building a JSONObject tree, this pulls
+ * tokens off the reader as they arrive and hands each day of the "list" array to a
+ * {@link Handler} as soon as it has been read. The parser only depends on the reader and the
+ * handler, so it can be exercised directly against recorded payloads.
+ */
+public class ForecastJsonParser {
+
+    // Location information
+    private static final String OWM_CITY = "city";
+    private static final String OWM_CITY_ID = "id";
+    private static final String OWM_CITY_NAME = "name";
+    private static final String OWM_COORD = "coord";
+
+    // Location coordinate
+    private static final String OWM_LATITUDE = "lat";
+    private static final String OWM_LONGITUDE = "lon";
+
+    // Weather information. Each day's forecast info is an element of the "list" array.
+    private static final String OWM_LIST = "list";
+
+    private static final String OWM_DATETIME = "dt";
+    private static final String OWM_PRESSURE = "pressure";
+    private static final String OWM_HUMIDITY = "humidity";
+    private static final String OWM_WINDSPEED = "speed";
+    private static final String OWM_WIND_DIRECTION = "deg";
+
+    // All temperatures are children of the "temp" object
+    private static final String OWM_TEMPERATURE = "temp";
+    private static final String OWM_MAX = "max";
+    private static final String OWM_MIN = "min";
+
+    private static final String OWM_WEATHER = "weather";
+    private static final String OWM_DESCRIPTION = "main";
+    private static final String OWM_WEATHER_ID = "id";
+
+    /**
+     * Receives the values of the forecast as they are read from the stream.
+     */
+    public interface Handler {
+        /**
+         * Called once the "city" object has been read.  Depending on the server this may
+         * happen before or after the days of the "list" array.
+         */
+        public void onCity(long cityId, String cityName, double latitude, double longitude);
+
+        /**
+         * Called for each element of the "list" array, in the order they appear.
+         */
+        public void onDay(long dateTime, double pressure, int humidity, double windSpeed,
+                          double windDirection, double high, double low,
+                          String description, int weatherId);
+    }
+
+    private final Handler mHandler;
+
+    // Fields of the day currently being read; reused across days so a forecast
+    // of any length is parsed without per-day allocations beyond the description.
+    private long mDateTime;
+    private double mPressure;
+    private int mHumidity;
+    private double mWindSpeed;
+    private double mWindDirection;
+    private double mHigh;
+    private double mLow;
+    private String mDescription;
+    private int mWeatherId;
+
+    public ForecastJsonParser(Handler handler) {
+        mHandler = handler;
+    }
+
+    /**
+     * Parses a forecast response, reporting the city and each day to the handler.
+     * The reader is consumed but not closed.
+     *
+     * @throws IOException if the stream could not be read or is not well formed JSON
+     * @throws IllegalStateException if a value does not have the expected type
+     */
+    public void parse(Reader in) throws IOException {
+        readForecast(new JsonReader(in), mHandler);
+    }
+
+    private void readForecast(JsonReader reader, Handler handler) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (OWM_CITY.equals(name)) {
+                readCity(reader, handler);
+            } else if (OWM_LIST.equals(name)) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    readDay(reader, handler);
+                }
+                reader.endArray();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    private void readCity(JsonReader reader, Handler handler) throws IOException {
+        long cityId = 0;
+        String cityName = null;
+        double latitude = 0;
+        double longitude = 0;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (OWM_CITY_ID.equals(name)) {
+                cityId = reader.nextLong();
+            } else if (OWM_CITY_NAME.equals(name)) {
+                cityName = reader.nextString();
+            } else if (OWM_COORD.equals(name)) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String coordName = reader.nextName();
+                    if (OWM_LATITUDE.equals(coordName)) {
+                        latitude = reader.nextDouble();
+                    } else if (OWM_LONGITUDE.equals(coordName)) {
+                        longitude = reader.nextDouble();
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        handler.onCity(cityId, cityName, latitude, longitude);
+    }
+
+    private void readDay(JsonReader reader, Handler handler) throws IOException {
+        mDateTime = 0;
+        mPressure = 0;
+        mHumidity = 0;
+        mWindSpeed = 0;
+        mWindDirection = 0;
+        mHigh = 0;
+        mLow = 0;
+        mDescription = null;
+        mWeatherId = 0;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (OWM_DATETIME.equals(name)) {
+                mDateTime = reader.nextLong();
+            } else if (OWM_PRESSURE.equals(name)) {
+                mPressure = reader.nextDouble();
+            } else if (OWM_HUMIDITY.equals(name)) {
+                mHumidity = reader.nextInt();
+            } else if (OWM_WINDSPEED.equals(name)) {
+                mWindSpeed = reader.nextDouble();
+            } else if (OWM_WIND_DIRECTION.equals(name)) {
+                mWindDirection = reader.nextDouble();
+            } else if (OWM_TEMPERATURE.equals(name)) {
+                readTemperature(reader);
+            } else if (OWM_WEATHER.equals(name)) {
+                readWeather(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        handler.onDay(mDateTime, mPressure, mHumidity, mWindSpeed, mWindDirection,
+                mHigh, mLow, mDescription, mWeatherId);
+    }
+
+    // Temperatures are in a child object called "temp".  Try not to name variables
+    // "temp" when working with temperature.  It confuses everybody.
+    private void readTemperature(JsonReader reader) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (OWM_MAX.equals(name)) {
+                mHigh = reader.nextDouble();
+            } else if (OWM_MIN.equals(name)) {
+                mLow = reader.nextDouble();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    // Description is in a child array called "weather", which is 1 element long.
+    // That element also contains a weather code.
+    private void readWeather(JsonReader reader) throws IOException {
+        reader.beginArray();
+        boolean first = true;
+        while (reader.hasNext()) {
+            if (!first || reader.peek() != JsonToken.BEGIN_OBJECT) {
+                reader.skipValue();
+                continue;
+            }
+            first = false;
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (OWM_DESCRIPTION.equals(name)) {
+                    mDescription = reader.nextString();
+                } else if (OWM_WEATHER_ID.equals(name)) {
+                    mWeatherId = reader.nextInt();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+        reader.endArray();
+    }
+}
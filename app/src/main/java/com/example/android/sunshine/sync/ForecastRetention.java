@@ -0,0 +1,140 @@
+package com.example.android.sunshine.sync;
+
+import android.content.ContentProviderClient;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.os.RemoteException;
+import android.util.Log;
+
+import com.example.android.sunshine.data.DateCodec;
+import com.example.android.sunshine.data.WeatherContract.LocationEntry;
+import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deletes the weather that nobody will look at again: the days of each location older than its
+ * history depth, and everything about locations that haven't been viewed for a while.  The
+ * preferred location is never evicted.  An evicted location's validators go with it, so
+ * picking it again downloads the full forecast instead of being answered with a 304.
+ * <p/>
+ * Rows go in batches of {@link #DELETE_BATCH_SIZE}, each selected through the location/date
+ * index, so no single delete holds the write lock for long.
+ */
+public class ForecastRetention {
+
+    private static final String LOG_TAG = ForecastRetention.class.getSimpleName();
+
+    public static final int DELETE_BATCH_SIZE = 500;
+
+    private static final String[] LOCATION_PROJECTION = {
+            LocationEntry._ID,
+            LocationEntry.COLUMN_LOCATION_SETTING,
+            LocationEntry.COLUMN_LAST_VIEWED,
+            LocationEntry.COLUMN_HISTORY_DAYS
+    };
+
+    // these indices must match the projection
+    private static final int INDEX_LOCATION_ID = 0;
+    private static final int INDEX_LOCATION_SETTING = 1;
+    private static final int INDEX_LAST_VIEWED = 2;
+    private static final int INDEX_HISTORY_DAYS = 3;
+
+    // A page of the rows of one location before a date, through the location/date index
+    private static final String BATCH_SELECTION = WeatherEntry._ID + " IN (SELECT " +
+            WeatherEntry._ID + " FROM " + WeatherEntry.TABLE_NAME + " WHERE " +
+            WeatherEntry.COLUMN_LOC_KEY + " = ? AND " + WeatherEntry.COLUMN_DATE + " < ? LIMIT " +
+            DELETE_BATCH_SIZE + ")";
+
+    private final ContentProviderClient mProvider;
+    private final ForecastValidatorCache mValidatorCache;
+    private final long mEvictAfterMillis;
+
+    private int mDeletedRows;
+    private int mEvictedLocations;
+
+    /**
+     * @param evictAfterDays how long a location may go without being viewed before it is
+     *                       evicted
+     */
+    public ForecastRetention(ContentProviderClient provider,
+                             ForecastValidatorCache validatorCache, int evictAfterDays) {
+        mProvider = provider;
+        mValidatorCache = validatorCache;
+        mEvictAfterMillis = TimeUnit.DAYS.toMillis(evictAfterDays);
+    }
+
+    /**
+     * @param now the current time, in milliseconds since the epoch
+     */
+    public void purge(String preferredLocation, long now) throws RemoteException {
+        long today = DateCodec.getEpochDay(now);
+
+        // Read the locations first, so the cursor isn't open while deleting
+        List<long[]> locations = new ArrayList<long[]>();
+        List<String> settings = new ArrayList<String>();
+        Cursor cursor = mProvider.query(LocationEntry.CONTENT_URI, LOCATION_PROJECTION,
+                null, null, null);
+        try {
+            while (cursor.moveToNext()) {
+                locations.add(new long[] {
+                        cursor.getLong(INDEX_LOCATION_ID),
+                        cursor.getLong(INDEX_LAST_VIEWED),
+                        cursor.getLong(INDEX_HISTORY_DAYS) });
+                settings.add(cursor.getString(INDEX_LOCATION_SETTING));
+            }
+        } finally {
+            cursor.close();
+        }
+
+        for (int i = 0; i < locations.size(); i++) {
+            long locationId = locations.get(i)[0];
+            long lastViewed = locations.get(i)[1];
+            long historyDays = locations.get(i)[2];
+
+            if (lastViewed == 0) {
+                // Stored without a view time; start its clock now
+                ContentValues values = new ContentValues();
+                values.put(LocationEntry.COLUMN_LAST_VIEWED, now);
+                mProvider.update(LocationEntry.CONTENT_URI, values, LocationEntry._ID + " = ?",
+                        new String[] { Long.toString(locationId) });
+                lastViewed = now;
+            }
+
+            if (!settings.get(i).equals(preferredLocation) &&
+                    now - lastViewed > mEvictAfterMillis) {
+                mDeletedRows += deleteWeatherBefore(locationId, Long.MAX_VALUE);
+                mProvider.delete(LocationEntry.CONTENT_URI, LocationEntry._ID + " = ?",
+                        new String[] { Long.toString(locationId) });
+                mValidatorCache.remove(settings.get(i));
+                mEvictedLocations++;
+                Log.v(LOG_TAG, "Evicted " + settings.get(i) + ", not viewed since " +
+                        new Date(lastViewed));
+            } else {
+                mDeletedRows += deleteWeatherBefore(locationId, today - historyDays);
+            }
+        }
+    }
+
+    public int getDeletedRows() {
+        return mDeletedRows;
+    }
+
+    public int getEvictedLocations() {
+        return mEvictedLocations;
+    }
+
+    private int deleteWeatherBefore(long locationId, long date) throws RemoteException {
+        String[] args = { Long.toString(locationId), Long.toString(date) };
+        int total = 0;
+        int deleted;
+        do {
+            deleted = mProvider.delete(WeatherEntry.CONTENT_URI, BATCH_SELECTION, args);
+            total += deleted;
+        } while (deleted == DELETE_BATCH_SIZE);
+        return total;
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.android.sunshine.sync;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers the HTTP validators (ETag and Last-Modified) of the last forecast stored for each
+ * location setting, so the next sync can ask the server whether anything changed instead of
+ * downloading the whole forecast again.
+ */
+public class ForecastValidatorCache {
+
+    // Validators are kept in their own preferences file, away from the user settings.
+    public static final String PREFS_NAME = "forecast_validators";
+
+    private static final String HEADER_ETAG = "ETag";
+    private static final String HEADER_LAST_MODIFIED = "Last-Modified";
+    private static final String HEADER_IF_NONE_MATCH = "If-None-Match";
+    private static final String HEADER_IF_MODIFIED_SINCE = "If-Modified-Since";
+
+    private static final String ETAG_SUFFIX = ".etag";
+    private static final String LAST_MODIFIED_SUFFIX = ".last_modified";
+
+    private final SharedPreferences mPrefs;
+
+    private final AtomicLong mHitCount = new AtomicLong();
+    private final AtomicLong mMissCount = new AtomicLong();
+
+    public ForecastValidatorCache(Context context) {
+        mPrefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Adds the conditional request headers for the location, if validators are known for it.
+     * Must be called before the connection is opened.
+     */
+    public void applyTo(HttpURLConnection connection, String locationSetting) {
+        String etag = mPrefs.getString(locationSetting + ETAG_SUFFIX, null);
+        String lastModified = mPrefs.getString(locationSetting + LAST_MODIFIED_SUFFIX, null);
+
+        if (etag != null) {
+            connection.setRequestProperty(HEADER_IF_NONE_MATCH, etag);
+        }
+        if (lastModified != null) {
+            connection.setRequestProperty(HEADER_IF_MODIFIED_SINCE, lastModified);
+        }
+    }
+
+    /**
+     * Checks whether the server answered 304 Not Modified, and counts the result as a hit or a
+     * miss.
+     */
+    public boolean isNotModified(HttpURLConnection connection) throws IOException {
+        if (connection.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+            mHitCount.incrementAndGet();
+            return true;
+        }
+        mMissCount.incrementAndGet();
+        return false;
+    }
+
+    public static String getETag(HttpURLConnection connection) {
+        return connection.getHeaderField(HEADER_ETAG);
+    }
+
+    public static String getLastModified(HttpURLConnection connection) {
+        return connection.getHeaderField(HEADER_LAST_MODIFIED);
+    }
+
+    /**
+     * Stores the validators of a response.  Only call this once the response has been
+     * stored, otherwise a failed sync would be answered with 304 next time.
+     */
+    public void put(String locationSetting, String etag, String lastModified) {
+        SharedPreferences.Editor editor = mPrefs.edit();
+        if (etag != null) {
+            editor.putString(locationSetting + ETAG_SUFFIX, etag);
+        } else {
+            editor.remove(locationSetting + ETAG_SUFFIX);
+        }
+        if (lastModified != null) {
+            editor.putString(locationSetting + LAST_MODIFIED_SUFFIX, lastModified);
+        } else {
+            editor.remove(locationSetting + LAST_MODIFIED_SUFFIX);
+        }
+        editor.apply();
+    }
+
+    /**
+     * Forgets the validators of a location, so its next sync downloads the full forecast.
+     */
+    public void remove(String locationSetting) {
+        mPrefs.edit()
+                .remove(locationSetting + ETAG_SUFFIX)
+                .remove(locationSetting + LAST_MODIFIED_SUFFIX)
+                .apply();
+    }
+
+    public long getHitCount() {
+        return mHitCount.get();
+    }
+
+    public long getMissCount() {
+        return mMissCount.get();
+    }
+}
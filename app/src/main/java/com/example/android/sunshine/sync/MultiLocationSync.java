@@ -0,0 +1,98 @@
+package com.example.android.sunshine.sync;
+
+import android.content.SyncStats;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Fetches the forecasts of several locations at once on a bounded pool, so refreshing N saved
+ * locations takes about as long as the slowest of them rather than the sum.  While one thread
+ * parses a response the others wait on the network; {@link ForecastFetcher} keeps the requests
+ * to any one host under its cap.
+ */
+public class MultiLocationSync {
+
+    private static final String LOG_TAG = MultiLocationSync.class.getSimpleName();
+
+    private final ForecastFetcher mFetcher;
+    private final int mMaxThreads;
+
+    public MultiLocationSync(ForecastFetcher fetcher, int maxThreads) {
+        mFetcher = fetcher;
+        mMaxThreads = maxThreads;
+    }
+
+    /**
+     * Fetches every location, and waits for all of them.
+     *
+     * @return the results, in the order of the locations
+     */
+    public List<ForecastFetcher.Result> fetchAll(List<String> locations)
+            throws InterruptedException {
+        List<ForecastFetcher.Result> results =
+                new ArrayList<ForecastFetcher.Result>(locations.size());
+        if (locations.size() == 1) {
+            // Not worth a thread
+            results.add(mFetcher.fetch(locations.get(0)));
+            return results;
+        }
+
+        ExecutorService executor =
+                Executors.newFixedThreadPool(Math.min(mMaxThreads, locations.size()));
+        try {
+            List<Future<ForecastFetcher.Result>> futures =
+                    new ArrayList<Future<ForecastFetcher.Result>>(locations.size());
+            for (final String location : locations) {
+                futures.add(executor.submit(new Callable<ForecastFetcher.Result>() {
+                    @Override
+                    public ForecastFetcher.Result call() {
+                        return mFetcher.fetch(location);
+                    }
+                }));
+            }
+            for (Future<ForecastFetcher.Result> future : futures) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException e) {
+                    // fetch reports its own failures; anything else is a bug
+                    throw new RuntimeException(e.getCause());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return results;
+    }
+
+    /**
+     * Adds the outcome of each location to the sync's stats, and logs its latency.  Every
+     * location fetched counts as an entry; a 304 counts as a skipped entry.
+     */
+    public static void report(List<ForecastFetcher.Result> results, SyncStats stats) {
+        for (ForecastFetcher.Result result : results) {
+            stats.numEntries++;
+            switch (result.status) {
+                case ForecastFetcher.Result.STATUS_NOT_MODIFIED:
+                    stats.numSkippedEntries++;
+                    break;
+                case ForecastFetcher.Result.STATUS_IO_ERROR:
+                    stats.numIoExceptions++;
+                    break;
+                case ForecastFetcher.Result.STATUS_PARSE_ERROR:
+                    stats.numParseExceptions++;
+                    break;
+                default:
+                    break;
+            }
+            Log.v(LOG_TAG, result.locationSetting + ": status " + result.status + " in " +
+                    result.latencyMillis + " ms");
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.android.sunshine.sync;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Lets through one request per key within a window, and counts the ones it drops.  Requests
+ * that come in a burst, like a rotation and a settings change a moment apart, are coalesced
+ * into the first of them.
+ */
+public class RequestDebouncer {
+
+    private final long mWindowMillis;
+    private final Map<String, Long> mLastRequests = new HashMap<String, Long>();
+    private long mCoalescedCount;
+
+    public RequestDebouncer(long windowMillis) {
+        mWindowMillis = windowMillis;
+    }
+
+    /**
+     * @param now the time of the request, on a clock that doesn't go back
+     * @return true if the request should go ahead, false if the same key went ahead less than
+     * the window before now
+     */
+    public synchronized boolean tryAcquire(String key, long now) {
+        Long last = mLastRequests.get(key);
+        if (last != null && now - last < mWindowMillis) {
+            mCoalescedCount++;
+            return false;
+        }
+        mLastRequests.put(key, now);
+        return true;
+    }
+
+    /**
+     * @return how many requests were dropped.
+     */
+    public synchronized long getCoalescedCount() {
+        return mCoalescedCount;
+    }
+}
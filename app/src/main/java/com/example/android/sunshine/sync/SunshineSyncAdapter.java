@@ -6,19 +6,21 @@ import android.app.NotificationManager;
 import android.app.PendingIntent;
 import android.content.AbstractThreadedSyncAdapter;
 import android.content.ContentProviderClient;
+import android.content.ContentProviderOperation;
 import android.content.ContentResolver;
-import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Context;
 import android.content.Intent;
+import android.content.OperationApplicationException;
+import android.content.PeriodicSync;
 import android.content.SharedPreferences;
 import android.content.SyncRequest;
 import android.content.SyncResult;
 import android.database.Cursor;
-import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
 import android.os.RemoteException;
+import android.os.SystemClock;
 import android.preference.PreferenceManager;
 import android.support.v4.app.NotificationCompat;
 import android.support.v4.app.TaskStackBuilder;
@@ -27,23 +29,17 @@ import android.util.Log;
 import com.example.android.sunshine.MainActivity;
 import com.example.android.sunshine.R;
 import com.example.android.sunshine.Utility;
+import com.example.android.sunshine.data.LocationIdCache;
 import com.example.android.sunshine.data.WeatherContract;
 
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
-
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.util.ArrayList;
 import java.util.Calendar;
-import java.util.Date;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
-import java.util.Vector;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
@@ -53,11 +49,16 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
     public static final int SYNC_FLEXTIME = SYNC_INTERVAL / 3;
 
     private Context mContext;
+    private final ForecastValidatorCache mValidatorCache;
+    private final ForecastFetcher mFetcher;
 
     public SunshineSyncAdapter(Context context, boolean autoInitialize) {
         super(context, autoInitialize);
 
         mContext = context;
+        mValidatorCache = new ForecastValidatorCache(context);
+        mFetcher = new ForecastFetcher(mValidatorCache, ForecastFetcher.API_BASE_URL,
+                context.getResources().getInteger(R.integer.sync_max_requests_per_host));
     }
 
     private static final String[] NOTIFY_WEATHER_PROJECTION = new String[] {
@@ -75,7 +76,76 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
 
     private static final int WEATHER_NOTIFICATION_ID = 3004;
 
+    // What is compared to tell how much a sync changed a forecast
+    private static final String[] CHANGE_PROJECTION = new String[] {
+            WeatherContract.WeatherEntry.COLUMN_DATE,
+            WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
+            WeatherContract.WeatherEntry.COLUMN_SHORT_DESC,
+            WeatherContract.WeatherEntry.COLUMN_MIN_TEMP,
+            WeatherContract.WeatherEntry.COLUMN_MAX_TEMP
+    };
+    private static final int INDEX_CHANGE_DATE = 0;
+    private static final int INDEX_CHANGE_WEATHER_ID = 1;
+    private static final int INDEX_CHANGE_SHORT_DESC = 2;
+    private static final int INDEX_CHANGE_MIN_TEMP = 3;
+    private static final int INDEX_CHANGE_MAX_TEMP = 4;
+
+    // Account setup and sync requests go through AccountManager, which reads from disk, so
+    // they're kept off the main thread, one at a time so the account exists before its syncs
+    private static final Executor sSetupExecutor = Executors.newSingleThreadExecutor();
+
+    // Sync requests for the same location this close together are coalesced into the first,
+    // as when the list is recreated and the location is changed in the same moment
+    private static final long SYNC_DEBOUNCE_MILLIS = TimeUnit.SECONDS.toMillis(10);
+    private static final RequestDebouncer sSyncDebouncer =
+            new RequestDebouncer(SYNC_DEBOUNCE_MILLIS);
+
     public static void syncImmediately(Context context) {
+        syncImmediately(context, Utility.getPreferredLocation(context));
+    }
+
+    /**
+     * Syncs for the given location setting, which may not be saved yet, as when it's changed in
+     * the settings.  The location is read now, so a request for a new location isn't coalesced
+     * into one for the old location made moments before.
+     */
+    public static void syncImmediately(Context context, final String locationSetting) {
+        final Context appContext = context.getApplicationContext();
+        sSetupExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                requestSync(appContext, locationSetting);
+            }
+        });
+    }
+
+    /**
+     * Like {@link #syncImmediately}, unless the forecast of the preferred location is still
+     * fresh, as when the list is recreated by a rotation.
+     */
+    public static void syncIfStale(Context context) {
+        final Context appContext = context.getApplicationContext();
+        final String locationSetting = Utility.getPreferredLocation(appContext);
+        sSetupExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                long now = System.currentTimeMillis();
+                SyncScheduler.recordAppOpened(appContext, now);
+                if (ForecastFreshness.isFresh(appContext, locationSetting, now)) {
+                    Log.v(LOG_TAG, "Forecast is fresh, not syncing");
+                    return;
+                }
+                requestSync(appContext, locationSetting);
+            }
+        });
+    }
+
+    private static void requestSync(Context context, String locationSetting) {
+        if (!sSyncDebouncer.tryAcquire(locationSetting, SystemClock.elapsedRealtime())) {
+            Log.v(LOG_TAG, "Sync requested moments ago, not syncing again");
+            return;
+        }
+
         Bundle bundle = new Bundle();
         bundle.putBoolean(ContentResolver.SYNC_EXTRAS_EXPEDITED, true);
         bundle.putBoolean(ContentResolver.SYNC_EXTRAS_MANUAL, true);
@@ -83,6 +153,13 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
                 context.getString(R.string.content_authority), bundle);
     }
 
+    /**
+     * @return how many sync requests were coalesced into one made moments before.
+     */
+    public static long getSyncsCoalesced() {
+        return sSyncDebouncer.getCoalescedCount();
+    }
+
     public static void configurePeriodicSync(Context context, int syncInterval, int flexTime) {
 
         Account account = getSyncAccount(context);
@@ -124,247 +201,392 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
 
         String locationQuery = Utility.getPreferredLocation(getContext());
 
-        deleteOldData(provider, locationQuery);
-
-        // These two need to be declared outside the try/catch
-        // so that they can be closed in the finally block.
-        HttpURLConnection urlConnection = null;
-        BufferedReader reader = null;
+        deleteOldData(provider, locationQuery, syncResult);
+
+        // The preferred location comes first, and is the only one when not syncing them all
+        List<String> locations = new ArrayList<String>();
+        Map<String, Long> cityIds = new HashMap<String, Long>();
+        Map<String, Long> fetchTimes = new HashMap<String, Long>();
+        Map<String, Long> expiryTimes = new HashMap<String, Long>();
+        locations.add(locationQuery);
+        loadLocations(provider, locationQuery,
+                getContext().getResources().getBoolean(R.bool.sync_all_locations),
+                locations, cityIds, fetchTimes, expiryTimes, syncResult);
+
+        // What is still fresh is left alone until its next sync is due.  When someone asked
+        // for this sync, the location they're looking at is due sooner.  A periodic sync may
+        // run up to its flex time early, so what expires within it is due already; otherwise
+        // it would wait out another whole period.
+        boolean manual = extras.getBoolean(ContentResolver.SYNC_EXTRAS_MANUAL, false);
+        long now = System.currentTimeMillis();
+        long earlyMillis = manual ? 0 :
+                TimeUnit.SECONDS.toMillis(getSyncPeriod(account, authority) / 3);
+        SyncScheduler scheduler = SyncScheduler.fromContext(getContext());
+        Iterator<String> stored = locations.iterator();
+        while (stored.hasNext()) {
+            String setting = stored.next();
+            if (!fetchTimes.containsKey(setting)) {
+                // Nothing stored to revalidate, so a 304 would leave it empty
+                mValidatorCache.remove(setting);
+                continue;
+            }
+            long lastFetched = fetchTimes.get(setting);
+            long expiresAt = expiryTimes.get(setting);
+            if (manual && setting.equals(locationQuery)) {
+                expiresAt = ForecastFreshness.getViewingExpiresAt(getContext(), lastFetched,
+                        expiresAt);
+            }
+            expiresAt -= earlyMillis;
+            if (ForecastFreshness.isFresh(lastFetched, expiresAt, now)) {
+                stored.remove();
+            }
+        }
+        if (locations.isEmpty()) {
+            Log.v(LOG_TAG, "Every forecast is fresh, not fetching");
+            schedulePeriodicSync(account, authority, scheduler, expiryTimes, now);
+            return;
+        }
 
-        // Will contain the raw JSON response as a string.
-        String forecastJsonStr = null;
+        List<ForecastFetcher.Result> results;
+        try {
+            results = new MultiLocationSync(mFetcher,
+                    getContext().getResources().getInteger(R.integer.sync_max_threads))
+                    .fetchAll(locations);
+        } catch (InterruptedException e) {
+            // The sync was cancelled
+            Thread.currentThread().interrupt();
+            return;
+        }
+        MultiLocationSync.report(results, syncResult.stats);
+        Log.v(LOG_TAG, "Sync requests coalesced so far: " + getSyncsCoalesced());
 
-        String format = "json";
-        String units = "metric";
-        int numDays = 14;
+        // Every location and forecast is written in one batch, so the sync is a single
+        // transaction and observers are only notified once it commits.
+        ArrayList<ContentProviderOperation> operations = new ArrayList<ContentProviderOperation>();
+        int numValues = 0;
+        long fetchedAt = System.currentTimeMillis();
+        int hourOfDay = Calendar.getInstance().get(Calendar.HOUR_OF_DAY);
+        ForecastFetcher.Result preferred = null;
 
         try {
-            // Construct the URL for the OpenWeatherMap query
-            // Possible parameters are avaiable at OWM's forecast API page, at
-            // http://openweathermap.org/API#forecast
-            final String FORECAST_BASE_URL =
-                    "http://api.openweathermap.org/data/2.5/forecast/daily?";
-            final String QUERY_PARAM = "q";
-            final String FORMAT_PARAM = "mode";
-            final String UNITS_PARAM = "units";
-            final String DAYS_PARAM = "cnt";
-
-            Uri builtUri = Uri.parse(FORECAST_BASE_URL).buildUpon()
-                    .appendQueryParameter(QUERY_PARAM, locationQuery)
-                    .appendQueryParameter(FORMAT_PARAM, format)
-                    .appendQueryParameter(UNITS_PARAM, units)
-                    .appendQueryParameter(DAYS_PARAM, Integer.toString(numDays))
-                    .build();
-
-            URL url = new URL(builtUri.toString());
-
-            // Create the request to OpenWeatherMap, and open the connection
-            urlConnection = (HttpURLConnection) url.openConnection();
-            urlConnection.setRequestMethod("GET");
-            urlConnection.connect();
-
-            // Read the input stream into a String
-            InputStream inputStream = urlConnection.getInputStream();
-            StringBuffer buffer = new StringBuffer();
-            if (inputStream == null) {
-                // Nothing to do.
-                return;
-            }
-            reader = new BufferedReader(new InputStreamReader(inputStream));
-
-            String line;
-            while ((line = reader.readLine()) != null) {
-                // Since it's JSON, adding a newline isn't necessary (it won't affect parsing)
-                // But it does make debugging a *lot* easier if you print out the completed
-                // buffer for debugging.
-                buffer.append(line + "\n");
+            for (ForecastFetcher.Result result : results) {
+                String setting = result.locationSetting;
+                boolean isPreferred = setting.equals(locationQuery);
+                if (isPreferred) {
+                    preferred = result;
+                }
+                if (result.status != ForecastFetcher.Result.STATUS_OK &&
+                        result.status != ForecastFetcher.Result.STATUS_NOT_MODIFIED) {
+                    // Still due; retried at the next sync
+                    continue;
+                }
+
+                // Only the preferred location is ever looked at, and it was just now if
+                // it's new
+                boolean opened = isPreferred && (!fetchTimes.containsKey(setting) ||
+                        SyncScheduler.wasOpenedSince(getContext(), fetchTimes.get(setting)));
+                double changeRatio = result.status == ForecastFetcher.Result.STATUS_OK
+                        ? getChangeRatio(provider, result) : 0;
+                long expiresAt = fetchedAt +
+                        scheduler.getNextInterval(changeRatio, hourOfDay, opened);
+                expiryTimes.put(setting, expiresAt);
+                Log.v(LOG_TAG, setting + ": " + Math.round(changeRatio * 100) +
+                        "% changed, next sync in " +
+                        TimeUnit.MILLISECONDS.toMinutes(expiresAt - fetchedAt) + " min");
+
+                if (result.status == ForecastFetcher.Result.STATUS_OK) {
+                    addOperations(provider, result, cityIds.get(setting),
+                            fetchedAt, expiresAt, operations);
+                    numValues += result.values.size();
+                } else {
+                    addRevalidation(provider, setting, fetchedAt, expiresAt, operations);
+                }
             }
 
-            if (buffer.length() == 0) {
-                // Stream was empty.  No point in parsing.
-                return;
+            if (!operations.isEmpty()) {
+                provider.applyBatch(operations);
             }
-            forecastJsonStr = buffer.toString();
-        } catch (IOException e) {
-            Log.e(LOG_TAG, "Error ", e);
-            // If the code didn't successfully get the weather data, there's no point in attemping
-            // to parse it.
+
+            Log.v(LOG_TAG, "Applied " + numValues + " forecast values");
+
+            syncResult.stats.numInserts += numValues;
+        } catch (RemoteException e) {
+            Log.e(LOG_TAG, e.getLocalizedMessage(), e);
+            syncResult.databaseError = true;
             return;
-        } finally {
-            if (urlConnection != null) {
-                urlConnection.disconnect();
-            }
-            if (reader != null) {
-                try {
-                    reader.close();
-                } catch (final IOException e) {
-                    Log.e(LOG_TAG, "Error closing stream", e);
-                }
+        } catch (OperationApplicationException e) {
+            Log.e(LOG_TAG, e.getLocalizedMessage(), e);
+            syncResult.databaseError = true;
+            return;
+        }
+
+        for (ForecastFetcher.Result result : results) {
+            if (result.status == ForecastFetcher.Result.STATUS_OK) {
+                mValidatorCache.put(result.locationSetting, result.etag, result.lastModified);
             }
         }
 
-        final String OWM_CITY = "city";
-        final String OWM_CITY_NAME = "name";
-        final String OWM_COORD = "coord";
+        schedulePeriodicSync(account, authority, scheduler, expiryTimes, fetchedAt);
 
-        // Location coordinate
-        final String OWM_LATITUDE = "lat";
-        final String OWM_LONGITUDE = "lon";
+        if (preferred != null && preferred.status == ForecastFetcher.Result.STATUS_OK) {
+            ContentValues today = preferred.values.get(0);
+            notifyWeather(today.getAsDouble(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP),
+                    today.getAsDouble(WeatherContract.WeatherEntry.COLUMN_MIN_TEMP),
+                    today.getAsString(WeatherContract.WeatherEntry.COLUMN_SHORT_DESC),
+                    today.getAsInteger(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID));
+        }
+    }
 
-        // Weather information. Each day's forecast info is an element of the "list" array.
-        final String OWM_LIST = "list";
+    /**
+     * Has the periodic sync come back when the first location is due.  It's only registered
+     * again when the period it has already would run it outside the flex time before then,
+     * since registering restarts its timer.
+     */
+    private void schedulePeriodicSync(Account account, String authority,
+                                      SyncScheduler scheduler, Map<String, Long> expiryTimes,
+                                      long now) {
+        long nextDue = Long.MAX_VALUE;
+        for (long expiresAt : expiryTimes.values()) {
+            nextDue = Math.min(nextDue, expiresAt);
+        }
+        int syncInterval = (int) TimeUnit.MILLISECONDS.toSeconds(scheduler.clamp(nextDue - now));
+        int flexTime = syncInterval / 3;
 
-        final String OWM_DATETIME = "dt";
-        final String OWM_PRESSURE = "pressure";
-        final String OWM_HUMIDITY = "humidity";
-        final String OWM_WINDSPEED = "speed";
-        final String OWM_WIND_DIRECTION = "deg";
+        long period = getSyncPeriod(account, authority);
+        if (period >= syncInterval - flexTime && period <= syncInterval) {
+            return;
+        }
+        Log.v(LOG_TAG, "Next periodic sync in " + syncInterval + " s, was " + period + " s");
+        configurePeriodicSync(getContext(), syncInterval, flexTime);
+    }
 
-        // All temperatures are children of the "temp" object
-        final String OWM_TEMPERATURE = "temp";
-        final String OWM_MAX = "max";
-        final String OWM_MIN = "min";
+    /**
+     * @return the period of the registered periodic sync, in seconds, or 0 if there is none.
+     */
+    private static long getSyncPeriod(Account account, String authority) {
+        for (PeriodicSync sync : ContentResolver.getPeriodicSyncs(account, authority)) {
+            return sync.period;
+        }
+        return 0;
+    }
 
-        final String OWM_WEATHER = "weather";
-        final String OWM_DESCRIPTION = "main";
-        final String OWM_WEATHER_ID = "id";
+    /**
+     * Adds the operations that store one location's forecast, and the location itself if it
+     * hasn't been stored yet.  The location is marked fresh until expiresAt, and a city id
+     * learned since it was stored is kept too.
+     *
+     * @param storedCityId the city id stored for the location, or null if there is none
+     */
+    private void addOperations(ContentProviderClient provider, ForecastFetcher.Result result,
+                               Long storedCityId, long fetchedAt, long expiresAt,
+                               ArrayList<ContentProviderOperation> operations)
+            throws RemoteException {
+
+        final long locationID = findLocation(provider, result.locationSetting);
+        // Where the location's insert goes, if it needs one
+        final int locationIndex = operations.size();
+
+        if (locationID == -1) {
+            Log.v(LOG_TAG, "inserting " + result.cityName + ", with coord: " +
+                    result.cityLatitude + ", " + result.cityLongitude);
+
+            ContentValues values = new ContentValues();
+            values.put(WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING, result.locationSetting);
+            values.put(WeatherContract.LocationEntry.COLUMN_CITY_NAME, result.cityName);
+            values.put(WeatherContract.LocationEntry.COLUMN_COORD_LAT, result.cityLatitude);
+            values.put(WeatherContract.LocationEntry.COLUMN_COORD_LONG, result.cityLongitude);
+            values.put(WeatherContract.LocationEntry.COLUMN_LAST_VIEWED, System.currentTimeMillis());
+            values.put(WeatherContract.LocationEntry.COLUMN_CITY_ID, result.cityId);
+            values.put(WeatherContract.LocationEntry.COLUMN_LAST_FETCHED, fetchedAt);
+            values.put(WeatherContract.LocationEntry.COLUMN_EXPIRES_AT, expiresAt);
+
+            operations.add(ContentProviderOperation
+                    .newInsert(WeatherContract.LocationEntry.CONTENT_URI)
+                    .withValues(values)
+                    .build());
+        } else {
+            ContentProviderOperation.Builder builder = newFreshnessUpdate(locationID,
+                    fetchedAt, expiresAt);
+            if (result.cityId != 0 &&
+                    (storedCityId == null || storedCityId != result.cityId)) {
+                builder.withValue(WeatherContract.LocationEntry.COLUMN_CITY_ID, result.cityId);
+            }
+            operations.add(builder.build());
+        }
+
+        for (ContentValues weatherValues : result.values) {
+            ContentProviderOperation.Builder builder =
+                    ContentProviderOperation.newInsert(WeatherContract.WeatherEntry.CONTENT_URI)
+                            .withValues(weatherValues);
+            if (locationID != -1) {
+                builder.withValue(WeatherContract.WeatherEntry.COLUMN_LOC_KEY, locationID);
+            } else {
+                // The location is inserted by an earlier operation of the batch
+                builder.withValueBackReference(WeatherContract.WeatherEntry.COLUMN_LOC_KEY,
+                        locationIndex);
+            }
+            operations.add(builder.build());
+        }
+    }
 
+    /**
+     * Marks a location whose forecast the server confirmed unchanged as fresh again.
+     */
+    private void addRevalidation(ContentProviderClient provider, String locationSetting,
+                                 long fetchedAt, long expiresAt,
+                                 ArrayList<ContentProviderOperation> operations)
+            throws RemoteException {
+        long locationID = findLocation(provider, locationSetting);
+        if (locationID != -1) {
+            operations.add(newFreshnessUpdate(locationID, fetchedAt, expiresAt).build());
+        }
+    }
+
+    private static ContentProviderOperation.Builder newFreshnessUpdate(long locationID,
+                                                                       long fetchedAt,
+                                                                       long expiresAt) {
+        return ContentProviderOperation
+                .newUpdate(WeatherContract.LocationEntry.CONTENT_URI)
+                .withSelection(WeatherContract.LocationEntry._ID + " = ?",
+                        new String[] { Long.toString(locationID) })
+                .withValue(WeatherContract.LocationEntry.COLUMN_LAST_FETCHED, fetchedAt)
+                .withValue(WeatherContract.LocationEntry.COLUMN_EXPIRES_AT, expiresAt);
+    }
+
+    /**
+     * @return the share of the fetched days that differ from those stored for the location,
+     * or 1 if none are stored yet.  Only what the list shows counts; humidity and wind wobble
+     * on every model run.
+     */
+    private double getChangeRatio(ContentProviderClient provider, ForecastFetcher.Result result)
+            throws RemoteException {
+        long locationID = findLocation(provider, result.locationSetting);
+        if (locationID == -1 || result.values.isEmpty()) {
+            return 1;
+        }
+
+        Map<Long, ContentValues> fetchedDays = new HashMap<Long, ContentValues>();
+        long firstDate = Long.MAX_VALUE;
+        long lastDate = Long.MIN_VALUE;
+        for (ContentValues values : result.values) {
+            long date = values.getAsLong(WeatherContract.WeatherEntry.COLUMN_DATE);
+            fetchedDays.put(date, values);
+            firstDate = Math.min(firstDate, date);
+            lastDate = Math.max(lastDate, date);
+        }
+
+        Cursor cursor = provider.query(WeatherContract.WeatherEntry.CONTENT_URI,
+                CHANGE_PROJECTION,
+                WeatherContract.WeatherEntry.COLUMN_LOC_KEY + " = ? AND " +
+                        WeatherContract.WeatherEntry.COLUMN_DATE + " BETWEEN ? AND ?",
+                new String[] { Long.toString(locationID), Long.toString(firstDate),
+                        Long.toString(lastDate) },
+                null);
+        int unchanged = 0;
         try {
-            JSONObject forecastJson = new JSONObject(forecastJsonStr);
-            JSONArray weatherArray = forecastJson.getJSONArray(OWM_LIST);
-
-            JSONObject cityJson = forecastJson.getJSONObject(OWM_CITY);
-            String cityName = cityJson.getString(OWM_CITY_NAME);
-
-            JSONObject cityCoord = cityJson.getJSONObject(OWM_COORD);
-            double cityLatitude = cityCoord.getDouble(OWM_LATITUDE);
-            double cityLongitude = cityCoord.getDouble(OWM_LONGITUDE);
-
-            Log.v(LOG_TAG, "inserting " + cityName + ", with coord: " + cityLatitude + ", " + cityLongitude);
-
-            final long locationID = addLocation(provider, locationQuery, cityName, cityLatitude, cityLongitude);
-
-            // Get and insert the new weather information into the database
-            Vector<ContentValues> cVVector = new Vector<ContentValues>(weatherArray.length());
-
-            for(int i = 0; i < weatherArray.length(); i++) {
-                // These are the values that will be collected.
-
-                long dateTime;
-                double pressure;
-                int humidity;
-                double windSpeed;
-                double windDirection;
-
-                double high;
-                double low;
-
-                String description;
-                int weatherId;
-
-                // Get the JSON object representing the day
-                JSONObject dayForecast = weatherArray.getJSONObject(i);
-
-                // The date/time is returned as a long.  We need to convert that
-                // into something human-readable, since most people won't read "1400356800" as
-                // "this saturday".
-                dateTime = dayForecast.getLong(OWM_DATETIME);
-
-                pressure = dayForecast.getDouble(OWM_PRESSURE);
-                humidity = dayForecast.getInt(OWM_HUMIDITY);
-                windSpeed = dayForecast.getDouble(OWM_WINDSPEED);
-                windDirection = dayForecast.getDouble(OWM_WIND_DIRECTION);
-
-                // Description is in a child array called "weather", which is 1 element long.
-                // That element also contains a weather code.
-                JSONObject weatherObject =
-                        dayForecast.getJSONArray(OWM_WEATHER).getJSONObject(0);
-                description = weatherObject.getString(OWM_DESCRIPTION);
-                weatherId = weatherObject.getInt(OWM_WEATHER_ID);
-
-                // Temperatures are in a child object called "temp".  Try not to name variables
-                // "temp" when working with temperature.  It confuses everybody.
-                JSONObject temperatureObject = dayForecast.getJSONObject(OWM_TEMPERATURE);
-                high = temperatureObject.getDouble(OWM_MAX);
-                low = temperatureObject.getDouble(OWM_MIN);
-
-                ContentValues weatherValues = new ContentValues();
-
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_LOC_KEY, locationID);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_DATETEXT,
-                        WeatherContract.getDbDateString(new Date(dateTime * 1000L)));
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_HUMIDITY, humidity);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_PRESSURE, pressure);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_WIND_SPEED, windSpeed);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_DEGREES, windDirection);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP, high);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_MIN_TEMP, low);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_SHORT_DESC, description);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID, weatherId);
-
-                cVVector.add(weatherValues);
-
-                if (i == 0) {
-                    notifyWeather(high, low, description, weatherId);
+            while (cursor.moveToNext()) {
+                ContentValues fetched = fetchedDays.get(cursor.getLong(INDEX_CHANGE_DATE));
+                if (fetched != null && isSameDay(cursor, fetched)) {
+                    unchanged++;
                 }
             }
+        } finally {
+            cursor.close();
+        }
+        return 1 - (double) unchanged / result.values.size();
+    }
 
-            if (cVVector.size() > 0) {
-                ContentValues[] contentValuesArray = new ContentValues[cVVector.size()];
-                cVVector.toArray(contentValuesArray);
-
-                // insert the vector of values into the database
-
-                final int inserted = provider.bulkInsert(WeatherContract.WeatherEntry.CONTENT_URI, contentValuesArray);
-
-                Log.v(LOG_TAG, "Inserted " + inserted + " values into the db");
-
-                Calendar cal = Calendar.getInstance();
-                cal.add(Calendar.DATE, -1);
-                String yesterdayDate = WeatherContract.getDbDateString(cal.getTime());
-//
-//                Cursor c = provider.query(WeatherContract.WeatherEntry.CONTENT_URI,
-//                        null,
-//                        WeatherContract.WeatherEntry.COLUMN_DATETEXT + " <= ?",
-//                        new String[] { yesterdayDate },
-//                        null);
-//
-//                if (c.moveToFirst()) {
-//                    String values = "";
-//                    for (String key: c.getColumnNames()) {
-//                        values += String.format("[%s: %s] ", key, c.getString(c.getColumnIndex(key)));
-//                    }
-//
-//                    Log.v(LOG_TAG, "Item to delete = " + values);
-//                }
-
-                final int deleted = getContext().getContentResolver().delete(WeatherContract.WeatherEntry.CONTENT_URI,
-                        WeatherContract.WeatherEntry.COLUMN_DATETEXT + " <= ?",
-                        new String[]{yesterdayDate});
-
-                Log.v(LOG_TAG, "Deleted " + deleted + " old values from the db");
-            }
+    private static boolean isSameDay(Cursor stored, ContentValues fetched) {
+        return stored.getInt(INDEX_CHANGE_WEATHER_ID) ==
+                fetched.getAsInteger(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID) &&
+                stored.getString(INDEX_CHANGE_SHORT_DESC).equals(
+                        fetched.getAsString(WeatherContract.WeatherEntry.COLUMN_SHORT_DESC)) &&
+                stored.getDouble(INDEX_CHANGE_MIN_TEMP) ==
+                        fetched.getAsDouble(WeatherContract.WeatherEntry.COLUMN_MIN_TEMP) &&
+                stored.getDouble(INDEX_CHANGE_MAX_TEMP) ==
+                        fetched.getAsDouble(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP);
+    }
 
-        } catch (JSONException e) {
-            Log.e(LOG_TAG, e.getLocalizedMessage(), e);
-            e.printStackTrace();
+    /**
+     * Reads the city id of the stored locations that have one and when each was last fetched
+     * and expires, and adds the settings of those other than the preferred one when syncing
+     * them all.
+     */
+    private void loadLocations(ContentProviderClient provider, String locationQuery,
+                               boolean syncAll, List<String> locations,
+                               Map<String, Long> cityIds, Map<String, Long> fetchTimes,
+                               Map<String, Long> expiryTimes, SyncResult syncResult) {
+        try {
+            Cursor cursor = provider.query(WeatherContract.LocationEntry.CONTENT_URI,
+                    new String[] {
+                            WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING,
+                            WeatherContract.LocationEntry.COLUMN_CITY_ID,
+                            WeatherContract.LocationEntry.COLUMN_LAST_FETCHED,
+                            WeatherContract.LocationEntry.COLUMN_EXPIRES_AT },
+                    syncAll ? null : WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING + " = ?",
+                    syncAll ? null : new String[] { locationQuery }, null);
+            try {
+                while (cursor.moveToNext()) {
+                    String setting = cursor.getString(0);
+                    if (cursor.getLong(1) != 0) {
+                        cityIds.put(setting, cursor.getLong(1));
+                    }
+                    if (cursor.getLong(2) != 0) {
+                        fetchTimes.put(setting, cursor.getLong(2));
+                        expiryTimes.put(setting, cursor.getLong(3));
+                    }
+                    if (!setting.equals(locationQuery)) {
+                        locations.add(setting);
+                    }
+                }
+            } finally {
+                cursor.close();
+            }
         } catch (RemoteException e) {
+            // Still sync the preferred location
             Log.e(LOG_TAG, e.getLocalizedMessage(), e);
-            e.printStackTrace();
             syncResult.databaseError = true;
         }
     }
 
-    private void deleteOldData(ContentProviderClient provider, String locationQuery) {
+    /**
+     * Deletes the days each location no longer keeps, and the locations that haven't been
+     * viewed for a while, then gives the space back to the file system.
+     */
+    private void deleteOldData(ContentProviderClient provider, String locationQuery,
+                               SyncResult syncResult) {
+        ForecastRetention retention = new ForecastRetention(provider, mValidatorCache,
+                getContext().getResources().getInteger(R.integer.retention_evict_after_days));
+        try {
+            retention.purge(locationQuery, System.currentTimeMillis());
+        } catch (RemoteException e) {
+            Log.e(LOG_TAG, e.getLocalizedMessage(), e);
+            syncResult.databaseError = true;
+        }
+
+        syncResult.stats.numDeletes += retention.getDeletedRows();
+        Log.v(LOG_TAG, "Deleted " + retention.getDeletedRows() + " old values and " +
+                retention.getEvictedLocations() + " locations from the db");
 
+        if (retention.getDeletedRows() > 0) {
+            // ContentProviderClient.call needs API 17
+            getContext().getContentResolver().call(WeatherContract.BASE_CONTENT_URI,
+                    WeatherContract.METHOD_RECLAIM_SPACE, null, null);
+        }
     }
 
-    private long addLocation(ContentProviderClient provider,
-                             String locationQuery,
-                             String cityName,
-                             double cityLatitude,
-                             double cityLongitude) throws RemoteException {
+    /**
+     * @return the _ID of the stored location, or -1 if it hasn't been stored yet.
+     */
+    private long findLocation(ContentProviderClient provider, String locationQuery)
+            throws RemoteException {
 
+        Long cachedId = LocationIdCache.get(locationQuery);
+        if (cachedId != null) {
+            return cachedId;
+        }
+
+        int generation = LocationIdCache.getGeneration();
         Cursor cursor = provider.query(
                 WeatherContract.LocationEntry.CONTENT_URI,
                 new String[]{WeatherContract.LocationEntry._ID},
@@ -373,26 +595,18 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
                 null
         );
 
-
-        final long locationID;
-        if (cursor.moveToFirst()) {
-            Log.v(LOG_TAG, "found it in the database!");
-            int columnId = cursor.getColumnIndex(WeatherContract.LocationEntry._ID);
-            locationID = cursor.getLong(columnId);
-        } else {
-            // The location does not yet exist, so add it
-            ContentValues values = new ContentValues();
-            values.put(WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING, locationQuery);
-            values.put(WeatherContract.LocationEntry.COLUMN_CITY_NAME, cityName);
-            values.put(WeatherContract.LocationEntry.COLUMN_COORD_LAT, cityLatitude);
-            values.put(WeatherContract.LocationEntry.COLUMN_COORD_LONG, cityLongitude);
-
-            Uri uri = provider.insert(WeatherContract.LocationEntry.CONTENT_URI, values);
-
-            locationID = ContentUris.parseId(uri);
+        try {
+            if (cursor.moveToFirst()) {
+                Log.v(LOG_TAG, "found it in the database!");
+                long locationID =
+                        cursor.getLong(cursor.getColumnIndex(WeatherContract.LocationEntry._ID));
+                LocationIdCache.put(locationQuery, locationID, generation);
+                return locationID;
+            }
+            return -1;
+        } finally {
+            cursor.close();
         }
-
-        return locationID;
     }
 
     private void notifyWeather(double high, double low, String description, int weatherId) {
@@ -469,7 +683,13 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
     }
 
     public static void initializeSyncAdapter(Context context) {
-        getSyncAccount(context);
+        final Context appContext = context.getApplicationContext();
+        sSetupExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                getSyncAccount(appContext);
+            }
+        });
     }
 
 }
@@ -0,0 +1,132 @@
+package com.example.android.sunshine.sync;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+
+import com.example.android.sunshine.R;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Picks how long each location waits for its next sync, instead of the same three hours for
+ * all of them.  A forecast that changed a lot at its last sync is checked again sooner, one
+ * that didn't change can wait; the night, and nobody having opened the app, stretch the wait
+ * further.  The result is clamped between the configured bounds, then moved by a phase fixed
+ * per install, so devices that synced together drift apart instead of hitting the API in step.
+ */
+public class SyncScheduler {
+
+    /** The interval for a forecast that didn't change at all, in the daytime, while in use. */
+    public static final long STEADY_INTERVAL_MILLIS =
+            TimeUnit.SECONDS.toMillis(SunshineSyncAdapter.SYNC_INTERVAL);
+
+    /** The most the per-install phase moves an interval, as a share of it. */
+    public static final double MAX_JITTER = 0.1;
+
+    // Between midnight and 6am nobody looks, and the models rarely update
+    private static final int NIGHT_START_HOUR = 0;
+    private static final int NIGHT_END_HOUR = 6;
+    private static final double NIGHT_FACTOR = 2;
+
+    // The app wasn't opened since the location's last sync
+    private static final double UNOPENED_FACTOR = 2;
+
+    private final long mMinIntervalMillis;
+    private final long mMaxIntervalMillis;
+    private final double mJitter;
+
+    /**
+     * @param jitter the phase of this install, between -{@link #MAX_JITTER} and
+     *               {@link #MAX_JITTER}
+     */
+    public SyncScheduler(long minIntervalMillis, long maxIntervalMillis, double jitter) {
+        mMinIntervalMillis = minIntervalMillis;
+        mMaxIntervalMillis = maxIntervalMillis;
+        mJitter = jitter;
+    }
+
+    /**
+     * @return a scheduler with the configured bounds and this install's phase, picked at
+     * random the first time it's needed and kept from then on.
+     */
+    public static SyncScheduler fromContext(Context context) {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
+        String jitterKey = context.getString(R.string.pref_sync_jitter);
+        float jitter;
+        if (prefs.contains(jitterKey)) {
+            jitter = prefs.getFloat(jitterKey, 0);
+        } else {
+            jitter = (float) ((new Random().nextDouble() * 2 - 1) * MAX_JITTER);
+            prefs.edit().putFloat(jitterKey, jitter).apply();
+        }
+
+        return new SyncScheduler(
+                TimeUnit.MINUTES.toMillis(
+                        context.getResources().getInteger(R.integer.sync_min_interval_minutes)),
+                TimeUnit.MINUTES.toMillis(
+                        context.getResources().getInteger(R.integer.sync_max_interval_minutes)),
+                jitter);
+    }
+
+    /**
+     * Remembers that the app was opened, so the locations synced before now are known to have
+     * been looked at.
+     */
+    public static void recordAppOpened(Context context, long now) {
+        PreferenceManager.getDefaultSharedPreferences(context).edit()
+                .putLong(context.getString(R.string.pref_last_opened), now)
+                .apply();
+    }
+
+    /**
+     * @return whether the app was opened at or after the given time.
+     */
+    public static boolean wasOpenedSince(Context context, long since) {
+        return PreferenceManager.getDefaultSharedPreferences(context)
+                .getLong(context.getString(R.string.pref_last_opened), 0) >= since;
+    }
+
+    /**
+     * @param changeRatio the share of the fetched days that differed from those stored, from
+     *                    0 for none to 1 for all of them or a new location
+     * @param hourOfDay the hour of the day the sync ran at, on the device's clock
+     * @param opened whether the app was opened since the location's previous sync
+     * @return how long until the location's next sync
+     */
+    public long getNextInterval(double changeRatio, int hourOfDay, boolean opened) {
+        double ratio = Math.max(0, Math.min(1, changeRatio));
+
+        // From the steady interval down to the shortest one, geometrically, so a few changed
+        // days already shorten it noticeably
+        double interval = Math.pow(STEADY_INTERVAL_MILLIS, 1 - ratio) *
+                Math.pow(mMinIntervalMillis, ratio);
+
+        if (hourOfDay >= NIGHT_START_HOUR && hourOfDay < NIGHT_END_HOUR) {
+            interval *= NIGHT_FACTOR;
+        }
+        if (!opened) {
+            interval *= UNOPENED_FACTOR;
+        }
+
+        double clamped = clamp(interval);
+        double jittered = clamped * (1 + mJitter);
+        if (jittered < mMinIntervalMillis || jittered > mMaxIntervalMillis) {
+            // Against a bound, move the other way so the phase still spreads devices out
+            jittered = clamped * (1 - mJitter);
+        }
+        return (long) clamp(jittered);
+    }
+
+    /**
+     * @return the interval clamped between the bounds.
+     */
+    public long clamp(long intervalMillis) {
+        return (long) clamp((double) intervalMillis);
+    }
+
+    private double clamp(double intervalMillis) {
+        return Math.max(mMinIntervalMillis, Math.min(mMaxIntervalMillis, intervalMillis));
+    }
+}